@@ -0,0 +1,144 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.handler.util;
+
+import com.google.common.collect.ImmutableSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what a handler pays on a permission cache miss: a first match scan over its flag entries.
+ * {@link #flagSets} is how entries were matched before they carried compiled masks, checking the event's flag set
+ * against each entry's. {@link #simulatedRebuiltFlagSets} imitates the scan from before flag sets were cached,
+ * building a fresh set from the event's bits for every entry it looked at. It is a stand-in written for this
+ * benchmark, not the removed FlagBitSet code, so treat its numbers as an estimate of the old cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryMatchBenchmark {
+
+    @Param({"16", "64"})
+    public int entryCount;
+
+    private List<TristateEntry> entries;
+    private FlagBitSet[] events;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        List<Flag> flags = FlagRegistry.getInstance().getFlagList();
+        entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            Set<Flag> set = new HashSet<>();
+            int size = 2 + random.nextInt(3);
+            while (set.size() < size) set.add(flags.get(random.nextInt(flags.size())));
+            entries.add(new TristateEntry(set, Tristate.values()[random.nextInt(3)]));
+        }
+        events = new FlagBitSet[32];
+        for (int i = 0; i < events.length; i++) {
+            Set<Flag> set = new HashSet<>();
+            int size = 3 + random.nextInt(4);
+            while (set.size() < size) set.add(flags.get(random.nextInt(flags.size())));
+            events[i] = FlagBitSet.of(set);
+        }
+    }
+
+    @Benchmark
+    public void simulatedRebuiltFlagSets(Blackhole blackhole) {
+        for (FlagBitSet event : events) {
+            Tristate result = Tristate.UNDEFINED;
+            for (TristateEntry entry : entries) {
+                if (buildFlagSet(event).containsAll(entry.set)) {
+                    result = entry.tristate;
+                    break;
+                }
+            }
+            blackhole.consume(result);
+        }
+    }
+
+    @Benchmark
+    public void flagSets(Blackhole blackhole) {
+        for (FlagBitSet event : events) {
+            Tristate result = Tristate.UNDEFINED;
+            for (TristateEntry entry : entries) {
+                if (event.toFlagSet().containsAll(entry.set)) {
+                    result = entry.tristate;
+                    break;
+                }
+            }
+            blackhole.consume(result);
+        }
+    }
+
+    @Benchmark
+    public void masks(Blackhole blackhole) {
+        for (FlagBitSet event : events) {
+            Tristate result = Tristate.UNDEFINED;
+            for (TristateEntry entry : entries) {
+                if (entry.matches(event)) {
+                    result = entry.tristate;
+                    break;
+                }
+            }
+            blackhole.consume(result);
+        }
+    }
+
+    private static Set<Flag> buildFlagSet(FlagBitSet bits) {
+        ImmutableSet.Builder<Flag> builder = ImmutableSet.builder();
+        FlagRegistry registry = FlagRegistry.getInstance();
+        for (int i = 0; i < FlagBitSet.MAX_FLAGS; i++) {
+            if (bits.get(i)) builder.add(registry.getFlag(i));
+        }
+        return builder.build();
+    }
+}
@@ -45,6 +45,11 @@ public final class FGConfigManager {
     private boolean saveInWorldFolder;
     private boolean useConfigFolder;
     private int nameLengthLimit;
+    private int regionCacheSize;
+    private int prewarmRadius;
+    private int permissionCacheTime;
+    private int hudUpdateInterval;
+    private int denialMessageInterval;
 
     private Map<Module, Boolean> modules = new EnumMap<>(Module.class);
 
@@ -98,6 +103,22 @@ public final class FGConfigManager {
         root.getNode("general", "nameLengthLimit").setComment("The length limit for object names. Use 0 or lower for no limit.\n" +
                 "Extremely long names can cause a variety of unfixable issues. You have been warned.")
                 .setValue(nameLengthLimit);
+        root.getNode("cache", "regionCacheSize").setComment("The maximum number of chunk sections and columns to keep in the region cache across all worlds. Default: 32768\n" +
+                "Each entry remembers which regions overlap a 16x16x16 section or a whole column, and costs a few hundred bytes.\n" +
+                "Least recently used entries are evicted once the limit is reached. Use 0 or lower for no limit.")
+                .setValue(regionCacheSize);
+        root.getNode("cache", "prewarmRadius").setComment("How many chunks around each player and world spawn to load into the region cache ahead of time. Default: 2\n" +
+                "The work is done off the server thread. Use 0 to only fill the cache when something happens in a chunk.")
+                .setValue(prewarmRadius);
+        root.getNode("cache", "permissionCacheTime").setComment("How long in milliseconds handlers remember a player's permission checks. Default: 1000\n" +
+                "Repeated events from the same player within this time skip the permission service. Use 0 or lower to always ask.")
+                .setValue(permissionCacheTime);
+        root.getNode("general", "hudUpdateInterval").setComment("How many ticks to wait between redraws of the region HUD while players move. Default: 5\n" +
+                "Changes within that time are merged into one redraw. Use 0 or lower to redraw on every move.")
+                .setValue(hudUpdateInterval);
+        root.getNode("general", "denialMessageInterval").setComment("How many ticks to collect denial messages for before showing them. Default: 5\n" +
+                "Each player only gets the latest message from that time. Use 0 or lower to show every message as it happens.")
+                .setValue(denialMessageInterval);
 
         for (Module m : Module.values()) {
             root.getNode("module", m.name).setValue(this.modules.get(m));
@@ -134,6 +155,11 @@ public final class FGConfigManager {
         saveWorldRegionsInWorldFolders = root.getNode("storage", "saveWorldRegionsInWorldFolders").getBoolean(true);
         useConfigFolder = root.getNode("storage", "useConfigFolder").getBoolean(false);
         nameLengthLimit = root.getNode("general", "nameLengthLimit").getInt(24);
+        regionCacheSize = root.getNode("cache", "regionCacheSize").getInt(32768);
+        prewarmRadius = root.getNode("cache", "prewarmRadius").getInt(2);
+        permissionCacheTime = root.getNode("cache", "permissionCacheTime").getInt(1000);
+        hudUpdateInterval = root.getNode("general", "hudUpdateInterval").getInt(5);
+        denialMessageInterval = root.getNode("general", "denialMessageInterval").getInt(5);
         for (Module m : Module.values()) {
             this.modules.put(m, root.getNode("module", m.name).getBoolean(true));
         }
@@ -162,6 +188,26 @@ public final class FGConfigManager {
         return nameLengthLimit;
     }
 
+    public int getRegionCacheSize() {
+        return regionCacheSize;
+    }
+
+    public int getPrewarmRadius() {
+        return prewarmRadius;
+    }
+
+    public int getPermissionCacheTime() {
+        return permissionCacheTime;
+    }
+
+    public int getHudUpdateInterval() {
+        return hudUpdateInterval;
+    }
+
+    public int getDenialMessageInterval() {
+        return denialMessageInterval;
+    }
+
     public Map<Module, Boolean> getModules() {
         return this.modules;
     }
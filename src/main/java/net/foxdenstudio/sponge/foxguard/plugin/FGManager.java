@@ -31,7 +31,7 @@ import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.SetMultimap;
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
+import net.foxdenstudio.sponge.foxguard.plugin.controller.ControllerBase;
 import net.foxdenstudio.sponge.foxguard.plugin.controller.IController;
 import net.foxdenstudio.sponge.foxguard.plugin.event.factory.FGEventFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.GlobalHandler;
@@ -42,6 +42,8 @@ import net.foxdenstudio.sponge.foxguard.plugin.region.GlobalRegion;
 import net.foxdenstudio.sponge.foxguard.plugin.region.IRegion;
 import net.foxdenstudio.sponge.foxguard.plugin.region.world.GlobalWorldRegion;
 import net.foxdenstudio.sponge.foxguard.plugin.region.world.IWorldRegion;
+import net.foxdenstudio.sponge.foxguard.plugin.util.ChunkTable;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
 import net.foxdenstudio.sponge.foxguard.plugin.util.RegionCache;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.util.GuavaCollectors;
@@ -50,7 +52,7 @@ import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class FGManager {
 
@@ -63,26 +65,41 @@ public final class FGManager {
     private final GlobalRegion globalRegion;
     private final GlobalHandler globalHandler;
 
+    /**
+     * Objects by lower case name, kept in step with the sets above so name lookups don't scan.
+     * The counts track how many worlds have a world region by each name.
+     */
+    private final Map<String, IRegion> regionNames;
+    private final Map<World, Map<String, IWorldRegion>> worldRegionNames;
+    private final Map<String, Integer> worldRegionNameCounts;
+    private final Map<String, IHandler> handlerNames;
+
     private final RegionCache regionCache;
 
+    /**
+     * Controllers by the handlers they link to, so a changed handler finds everything that depends on it
+     * without going through every controller. Kept current by {@link ControllerBase}.
+     */
+    private final SetMultimap<IHandler, IController> controllerLinks = HashMultimap.create();
+
     private FGManager() {
         instance = this;
-        worldRegions = new CacheMap<>((key, map) -> {
-            if (key instanceof World) {
-                Set<IWorldRegion> set = new HashSet<>();
-                map.put((World) key, set);
-                return set;
-            } else return new HashSet<>();
-        });
-        regions = new HashSet<>();
-        handlers = new HashSet<>();
+        worldRegions = new ConcurrentHashMap<>();
+        regions = ConcurrentHashMap.newKeySet();
+        handlers = ConcurrentHashMap.newKeySet();
+        regionNames = new ConcurrentHashMap<>();
+        worldRegionNames = new ConcurrentHashMap<>();
+        worldRegionNameCounts = new ConcurrentHashMap<>();
+        handlerNames = new ConcurrentHashMap<>();
         globalRegion = new GlobalRegion();
         globalHandler = new GlobalHandler();
         regions.add(globalRegion);
         handlers.add(globalHandler);
+        index(globalRegion);
+        index(globalHandler);
         globalRegion.addHandler(globalHandler);
 
-        this.regionCache = new RegionCache(regions, worldRegions);
+        this.regionCache = new RegionCache(regions, worldRegions, FGConfigManager.getInstance().getRegionCacheSize());
     }
 
     public static synchronized void init() {
@@ -109,11 +126,7 @@ public final class FGManager {
     }
 
     public boolean isRegionNameAvailable(String name) {
-        if (getRegion(name) != null) return false;
-        for (World world : worldRegions.keySet()) {
-            if (getWorldRegion(world, name) != null) return false;
-        }
-        return true;
+        return getRegion(name) == null && (name == null || !worldRegionNameCounts.containsKey(name.toLowerCase()));
     }
 
     public boolean isWorldRegionNameAvailable(String name, World world) {
@@ -122,31 +135,21 @@ public final class FGManager {
     }
 
     public Tristate isWorldRegionNameAvailable(String name) {
-        Tristate available = null;
-        for (World world : worldRegions.keySet()) {
-            if (getWorldRegion(world, name) == null) {
-                if (available == null) {
-                    available = Tristate.TRUE;
-                } else if (available == Tristate.FALSE) {
-                    available = Tristate.UNDEFINED;
-                }
-            } else {
-                if (available == null) {
-                    available = Tristate.FALSE;
-                } else if (available == Tristate.TRUE) {
-                    available = Tristate.UNDEFINED;
-                }
-            }
-        }
-        return available;
+        int worlds = worldRegions.size();
+        if (worlds == 0) return null;
+        int taken = name == null ? 0 : worldRegionNameCounts.getOrDefault(name.toLowerCase(), 0);
+        if (taken == 0) return Tristate.TRUE;
+        else if (taken >= worlds) return Tristate.FALSE;
+        else return Tristate.UNDEFINED;
     }
 
     public boolean addWorldRegion(World world, IWorldRegion region) {
-        if (region == null || region.getWorld() != null ||
+        if (world == null || region == null || region.getWorld() != null ||
                 !isWorldRegionNameAvailable(region.getName(), world) || !isNameValid(region.getName()))
             return false;
         region.setWorld(world);
-        this.worldRegions.get(world).add(region);
+        getWorldRegionSet(world).add(region);
+        index(region);
         this.regionCache.markDirty(region, RegionCache.DirtyType.ADDED);
         FGStorageManager.getInstance().addObject(region);
         Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), region));
@@ -156,6 +159,7 @@ public final class FGManager {
     public boolean addRegion(IRegion region) {
         if (region == null || !isRegionNameAvailable(region.getName()) || !isNameValid(region.getName())) return false;
         this.regions.add(region);
+        index(region);
         this.regionCache.markDirty(region, RegionCache.DirtyType.ADDED);
         FGStorageManager.getInstance().addObject(region);
         Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), region));
@@ -169,21 +173,14 @@ public final class FGManager {
     }
 
     public IWorldRegion getWorldRegion(World world, String name) {
-        for (IWorldRegion region : this.worldRegions.get(world)) {
-            if (region.getName().equalsIgnoreCase(name)) {
-                return region;
-            }
-        }
-        return null;
+        if (world == null || name == null) return null;
+        Map<String, IWorldRegion> names = this.worldRegionNames.get(world);
+        return names == null ? null : names.get(name.toLowerCase());
     }
 
     public IRegion getRegion(String name) {
-        for (IRegion region : this.regions) {
-            if (region.getName().equalsIgnoreCase(name)) {
-                return region;
-            }
-        }
-        return null;
+        if (name == null) return null;
+        return this.regionNames.get(name.toLowerCase());
     }
 
     public IRegion getRegionFromWorld(World world, String name) {
@@ -198,7 +195,7 @@ public final class FGManager {
     }
 
     public Set<IWorldRegion> getWorldRegions(World world) {
-        return ImmutableSet.copyOf(this.worldRegions.get(world));
+        return ImmutableSet.copyOf(getWorldRegionSet(world));
     }
 
     public Set<IRegion> getAllRegions() {
@@ -211,7 +208,7 @@ public final class FGManager {
     public Set<IRegion> getAllRegions(World world) {
         if (world == null) return getRegions();
         Set<IRegion> set = new HashSet<>();
-        this.worldRegions.get(world).forEach(set::add);
+        getWorldRegionSet(world).forEach(set::add);
         this.regions.forEach(set::add);
         return ImmutableSet.copyOf(set);
     }
@@ -225,27 +222,54 @@ public final class FGManager {
     }
 
     public Set<IRegion> getRegionsAtPos(World world, Vector3i position) {
-        return FGManager.getInstance().getRegionsInChunkAtPos(world, position).stream()
-                .filter(region -> region.contains(position, world))
-                .collect(Collectors.toSet());
+        return getRegionsAtPos(world, position, false);
     }
 
     public Set<IRegion> getRegionsAtPos(World world, Vector3i position, boolean includeDisabled) {
-        return FGManager.getInstance().getRegionsInChunkAtPos(world, position, includeDisabled).stream()
-                .filter(region -> region.contains(position, world))
-                .collect(Collectors.toSet());
+        RegionCache.ChunkData data = this.regionCache.getData(world,
+                position.getX() >> 4,
+                position.getY() >> 4,
+                position.getZ() >> 4);
+        if (!includeDisabled) return new HashSet<>(data.getChain(position).getRegions());
+        Set<IRegion> set = new HashSet<>(data.getFullRegions(true));
+        for (IRegion region : data.getPartialRegions(true)) {
+            if (region.contains(position, world)) set.add(region);
+        }
+        return set;
     }
 
     public Set<IRegion> getRegionsAtPos(World world, Vector3d position) {
-        return FGManager.getInstance().getRegionsInChunkAtPos(world, position).stream()
-                .filter(region -> region.contains(position, world))
-                .collect(Collectors.toSet());
+        return getRegionsAtPos(world, position, false);
     }
 
     public Set<IRegion> getRegionsAtPos(World world, Vector3d position, boolean includeDisabled) {
-        return FGManager.getInstance().getRegionsInChunkAtPos(world, position, includeDisabled).stream()
-                .filter(region -> region.contains(position, world))
-                .collect(Collectors.toSet());
+        RegionCache.ChunkData data = this.regionCache.getData(world,
+                GenericMath.floor(position.getX()) >> 4,
+                GenericMath.floor(position.getY()) >> 4,
+                GenericMath.floor(position.getZ()) >> 4);
+        Set<IRegion> set = new HashSet<>(data.getFullRegions(includeDisabled));
+        for (IRegion region : data.getPartialRegions(includeDisabled)) {
+            if (region.contains(position, world)) set.add(region);
+        }
+        return set;
+    }
+
+    public HandlerChain getHandlerChain(World world, Vector3i position) {
+        return this.regionCache.getData(world,
+                position.getX() >> 4,
+                position.getY() >> 4,
+                position.getZ() >> 4).getChain(position);
+    }
+
+    public HandlerChain getHandlerChain(World world, Vector3d position) {
+        return this.regionCache.getData(world,
+                GenericMath.floor(position.getX()) >> 4,
+                GenericMath.floor(position.getY()) >> 4,
+                GenericMath.floor(position.getZ()) >> 4).getChain(position);
+    }
+
+    public HandlerChain getHandlerChain(Set<IRegion> regions) {
+        return this.regionCache.getChain(regions);
     }
 
     public Set<IRegion> getRegionsAtMultiLocI(Iterable<Location<World>> locations) {
@@ -259,7 +283,7 @@ public final class FGManager {
             Vector3i pos = loc.getBlockPosition();
             chunkPosMap.put(
                     new Chunk(
-                            new Vector3i(
+                            ChunkTable.key(
                                     pos.getX() >> 4,
                                     pos.getY() >> 4,
                                     pos.getZ() >> 4
@@ -271,8 +295,10 @@ public final class FGManager {
         }
         for (Map.Entry<Chunk, Collection<Vector3i>> entry : chunkPosMap.asMap().entrySet()) {
             Chunk chunk = entry.getKey();
-            RegionCache.ChunkData data = this.regionCache.getData(chunk.world, chunk.chunk);
-            Set<IRegion> candidates = new HashSet<>(data.getRegions(includeDisabled));
+            RegionCache.ChunkData data = this.regionCache.getData(chunk.world,
+                    ChunkTable.keyX(chunk.key), ChunkTable.keyY(chunk.key), ChunkTable.keyZ(chunk.key));
+            set.addAll(data.getFullRegions(includeDisabled));
+            Set<IRegion> candidates = new HashSet<>(data.getPartialRegions(includeDisabled));
             candidates.removeAll(set);
             for (Vector3i pos : entry.getValue()) {
                 if (candidates.isEmpty()) break;
@@ -301,7 +327,7 @@ public final class FGManager {
             Vector3i pos = loc.getBlockPosition();
             chunkPosMap.put(
                     new Chunk(
-                            new Vector3i(
+                            ChunkTable.key(
                                     pos.getX() >> 4,
                                     pos.getY() >> 4,
                                     pos.getZ() >> 4
@@ -313,8 +339,10 @@ public final class FGManager {
         }
         for (Map.Entry<Chunk, Collection<Vector3d>> entry : chunkPosMap.asMap().entrySet()) {
             Chunk chunk = entry.getKey();
-            RegionCache.ChunkData data = this.regionCache.getData(chunk.world, chunk.chunk);
-            Set<IRegion> candidates = new HashSet<>(data.getRegions(includeDisabled));
+            RegionCache.ChunkData data = this.regionCache.getData(chunk.world,
+                    ChunkTable.keyX(chunk.key), ChunkTable.keyY(chunk.key), ChunkTable.keyZ(chunk.key));
+            set.addAll(data.getFullRegions(includeDisabled));
+            Set<IRegion> candidates = new HashSet<>(data.getPartialRegions(includeDisabled));
             candidates.removeAll(set);
             for (Vector3d pos : entry.getValue()) {
                 if (candidates.isEmpty()) break;
@@ -338,10 +366,9 @@ public final class FGManager {
 
     public Set<IRegion> getRegionsInChunkAtPos(World world, Vector3i pos, boolean includeDisabled) {
         return this.regionCache.getData(world,
-                new Vector3i(
-                        pos.getX() >> 4,
-                        pos.getY() >> 4,
-                        pos.getZ() >> 4)
+                pos.getX() >> 4,
+                pos.getY() >> 4,
+                pos.getZ() >> 4
         ).getRegions(includeDisabled);
     }
 
@@ -351,13 +378,20 @@ public final class FGManager {
 
     public Set<IRegion> getRegionsInChunkAtPos(World world, Vector3d pos, boolean includeDisabled) {
         return this.regionCache.getData(world,
-                new Vector3i(
-                        GenericMath.floor(pos.getX()) >> 4,
-                        GenericMath.floor(pos.getY()) >> 4,
-                        GenericMath.floor(pos.getZ()) >> 4)
+                GenericMath.floor(pos.getX()) >> 4,
+                GenericMath.floor(pos.getY()) >> 4,
+                GenericMath.floor(pos.getZ()) >> 4
         ).getRegions(includeDisabled);
     }
 
+    /**
+     * Gets the live set of regions for a world, creating it if the world hasn't been seen yet.
+     */
+    private Set<IWorldRegion> getWorldRegionSet(World world) {
+        if (world == null) return Collections.emptySet();
+        return this.worldRegions.computeIfAbsent(world, key -> ConcurrentHashMap.newKeySet());
+    }
+
     public Set<IHandler> getHandlers() {
         return ImmutableSet.copyOf(this.handlers);
     }
@@ -383,27 +417,20 @@ public final class FGManager {
         if (handler == null) return false;
         if (gethandler(handler.getName()) != null) return false;
         handlers.add(handler);
+        index(handler);
         FGStorageManager.getInstance().addObject(handler);
         Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), handler));
         return true;
     }
 
     public IHandler gethandler(String name) {
-        for (IHandler handler : handlers) {
-            if (handler.getName().equalsIgnoreCase(name)) {
-                return handler;
-            }
-        }
-        return null;
+        if (name == null) return null;
+        return this.handlerNames.get(name.toLowerCase());
     }
 
     public IController getController(String name) {
-        for (IHandler handler : handlers) {
-            if ((handler instanceof IController) && handler.getName().equalsIgnoreCase(name)) {
-                return (IController) handler;
-            }
-        }
-        return null;
+        IHandler handler = gethandler(name);
+        return handler instanceof IController ? (IController) handler : null;
     }
 
     public boolean removeHandler(IHandler handler) {
@@ -419,6 +446,9 @@ public final class FGManager {
         FGStorageManager.getInstance().removeObject(handler);
         Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), handler));
         handlers.remove(handler);
+        unindex(handler);
+        this.controllerLinks.removeAll(handler);
+        if (handler instanceof IController) this.controllerLinks.values().removeIf(controller -> controller == handler);
         return true;
     }
 
@@ -429,6 +459,7 @@ public final class FGManager {
             if (region == null) return false;
             if (!this.regions.contains(region)) return false;
             this.regions.remove(region);
+            unindex(region);
             FGStorageManager.getInstance().removeObject(region);
             Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), region));
             this.regionCache.markDirty(region, RegionCache.DirtyType.REMOVED);
@@ -440,15 +471,16 @@ public final class FGManager {
         if (region == null || region instanceof GlobalWorldRegion) return false;
         boolean removed = false;
         if (region.getWorld() != null) {
-            if (!this.worldRegions.get(region.getWorld()).contains(region)) {
+            if (!getWorldRegionSet(region.getWorld()).contains(region)) {
                 return false;
             }
-            this.worldRegions.get(region.getWorld()).remove(region);
+            getWorldRegionSet(region.getWorld()).remove(region);
+            unindex(region.getWorld(), region);
             removed = true;
         } else {
-            for (Set<IWorldRegion> set : this.worldRegions.values()) {
-                if (set.contains(region)) {
-                    set.remove(region);
+            for (Map.Entry<World, Set<IWorldRegion>> entry : this.worldRegions.entrySet()) {
+                if (entry.getValue().remove(region)) {
+                    unindex(entry.getKey(), region);
                     removed = true;
                 }
             }
@@ -463,14 +495,26 @@ public final class FGManager {
 
     public boolean link(ILinkable linkable, IHandler handler) {
         if (linkable == null || handler == null || linkable.getHandlers().contains(handler)) return false;
-        Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
-        return !(handler instanceof GlobalHandler && !(linkable instanceof GlobalWorldRegion || linkable instanceof GlobalRegion)) && linkable.addHandler(handler);
+        if (handler instanceof GlobalHandler && !(linkable instanceof GlobalWorldRegion || linkable instanceof GlobalRegion))
+            return false;
+        if (!linkable.addHandler(handler)) return false;
+        postLinkUpdate(linkable);
+        return true;
+    }
+
+    private void postLinkUpdate(ILinkable linkable) {
+        if (linkable instanceof IFGObject) {
+            Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), (IFGObject) linkable));
+        } else {
+            Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+        }
     }
 
     public boolean unlink(ILinkable linkable, IHandler handler) {
         if (linkable == null || handler == null || !linkable.getHandlers().contains(handler)) return false;
-        Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
-        return !(handler instanceof GlobalHandler) && linkable.removeHandler(handler);
+        if (handler instanceof GlobalHandler || !linkable.removeHandler(handler)) return false;
+        postLinkUpdate(linkable);
+        return true;
     }
 
     public boolean rename(IFGObject object, String newName) {
@@ -481,7 +525,9 @@ public final class FGManager {
             if (this.gethandler(newName) != null) return false;
         }
         FGStorageManager.getInstance().removeObject(object);
+        unindex(object);
         object.setName(newName);
+        index(object);
         FGStorageManager.getInstance().addObject(object);
         return true;
     }
@@ -489,12 +535,55 @@ public final class FGManager {
     public void initWorld(World world) {
         GlobalWorldRegion gwr = new GlobalWorldRegion();
         gwr.setWorld(world);
-        this.worldRegions.get(world).add(gwr);
+        getWorldRegionSet(world).add(gwr);
+        index(gwr);
         this.regionCache.markDirty(gwr, RegionCache.DirtyType.ADDED);
     }
 
     public void unloadWorld(World world) {
         this.worldRegions.remove(world);
+        Map<String, IWorldRegion> names = this.worldRegionNames.remove(world);
+        if (names != null) names.keySet().forEach(this::decrementWorldRegionName);
+        this.regionCache.unloadWorld(world);
+    }
+
+    public void unloadChunk(World world, Vector3i chunk) {
+        this.regionCache.unloadChunk(world, chunk.getX(), chunk.getZ());
+    }
+
+    private void index(IFGObject object) {
+        String name = object.getName().toLowerCase();
+        if (object instanceof IWorldRegion) {
+            World world = ((IWorldRegion) object).getWorld();
+            if (world == null) return;
+            Map<String, IWorldRegion> names = this.worldRegionNames.computeIfAbsent(world, key -> new ConcurrentHashMap<>());
+            if (names.put(name, (IWorldRegion) object) == null) this.worldRegionNameCounts.merge(name, 1, Integer::sum);
+        } else if (object instanceof IRegion) {
+            this.regionNames.put(name, (IRegion) object);
+        } else if (object instanceof IHandler) {
+            this.handlerNames.put(name, (IHandler) object);
+        }
+    }
+
+    private void unindex(IFGObject object) {
+        if (object instanceof IWorldRegion) {
+            unindex(((IWorldRegion) object).getWorld(), (IWorldRegion) object);
+        } else if (object instanceof IRegion) {
+            this.regionNames.remove(object.getName().toLowerCase(), object);
+        } else if (object instanceof IHandler) {
+            this.handlerNames.remove(object.getName().toLowerCase(), object);
+        }
+    }
+
+    private void unindex(World world, IWorldRegion region) {
+        if (world == null) return;
+        Map<String, IWorldRegion> names = this.worldRegionNames.get(world);
+        String name = region.getName().toLowerCase();
+        if (names != null && names.remove(name, region)) decrementWorldRegionName(name);
+    }
+
+    private void decrementWorldRegionName(String name) {
+        this.worldRegionNameCounts.computeIfPresent(name, (key, count) -> count > 1 ? count - 1 : null);
     }
 
     public GlobalHandler getGlobalHandler() {
@@ -505,16 +594,67 @@ public final class FGManager {
         regionCache.markDirty(region, type);
     }
 
+    /**
+     * Throws away the handler chains an object is part of.
+     * Called whenever links, priorities or enabled states change.
+     * A changed handler also reaches every controller that depends on it, directly or through other controllers,
+     * and the chains those controllers are linked into. Nothing else is touched.
+     */
+    public void markChainsDirty(IFGObject object) {
+        if (object instanceof IHandler) {
+            Set<IHandler> dependents = getDependents((IHandler) object);
+            for (IHandler handler : dependents) {
+                if (handler instanceof IController) ((IController) handler).onDependencyUpdate();
+            }
+            if (this.regionCache != null) this.regionCache.invalidateChains(dependents);
+        } else if (object instanceof IRegion && this.regionCache != null) {
+            this.regionCache.invalidateChains((IRegion) object);
+        }
+    }
+
+    public void markChainsDirty() {
+        for (IHandler handler : this.handlers) {
+            if (handler instanceof IController) ((IController) handler).onDependencyUpdate();
+        }
+        this.regionCache.invalidateChains();
+    }
+
+    /**
+     * Gets a handler along with every controller that links to it, directly or through other controllers.
+     */
+    private Set<IHandler> getDependents(IHandler handler) {
+        Set<IHandler> dependents = new HashSet<>();
+        Deque<IHandler> queue = new ArrayDeque<>();
+        queue.add(handler);
+        IHandler next;
+        while ((next = queue.poll()) != null) {
+            if (dependents.add(next)) queue.addAll(this.controllerLinks.get(next));
+        }
+        return dependents;
+    }
+
+    public void addControllerLink(IController controller, IHandler handler) {
+        this.controllerLinks.put(handler, controller);
+    }
+
+    public void removeControllerLink(IController controller, IHandler handler) {
+        this.controllerLinks.remove(handler, controller);
+    }
+
     public void clearRegionCache() {
         this.regionCache.clearCaches();
     }
 
+    public RegionCache getRegionCache() {
+        return regionCache;
+    }
+
     private static class Chunk {
-        Vector3i chunk;
+        long key;
         World world;
 
-        public Chunk(Vector3i chunk, World world) {
-            this.chunk = chunk;
+        public Chunk(long key, World world) {
+            this.key = key;
             this.world = world;
         }
 
@@ -525,12 +665,12 @@ public final class FGManager {
 
             Chunk chunk1 = (Chunk) o;
 
-            return chunk.equals(chunk1.chunk) && world.equals(chunk1.world);
+            return key == chunk1.key && world.equals(chunk1.world);
         }
 
         @Override
         public int hashCode() {
-            int result = chunk.hashCode();
+            int result = Long.hashCode(key);
             result = 31 * result + world.hashCode();
             return result;
         }
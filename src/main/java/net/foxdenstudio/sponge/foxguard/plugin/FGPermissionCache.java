@@ -0,0 +1,235 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin;
+
+import com.google.common.collect.ImmutableSet;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.context.Context;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared cache for permission checks made while handling events.
+ * <p>
+ * Permission nodes are interned to small ids so that callers can build them once and query by id.
+ * Results are keyed by user, node and the set of contexts the check was made in, and are kept for
+ * the permissionCacheTime config option. The cache is split into independently locked stripes by user
+ * so that checks from different players don't contend.
+ * <p>
+ * Resolving a user's active contexts runs every context calculator, so callers resolve them once with
+ * {@link #getContexts(User)} and pass them to every check they make for the same evaluation.
+ */
+public final class FGPermissionCache {
+
+    private static final int STRIPES = 16;
+    private static final int STRIPE_SIZE = 1024;
+
+    private static final FGPermissionCache instance = new FGPermissionCache();
+
+    private final Map<String, Integer> nodeIds = new ConcurrentHashMap<>();
+    private final List<String> nodes = new ArrayList<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private FGPermissionCache() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public static FGPermissionCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Interns a permission node.
+     *
+     * @param node the permission node
+     * @return the id of the node, which stays the same for as long as the server runs
+     */
+    public int getNodeId(String node) {
+        Integer id = nodeIds.get(node);
+        if (id != null) return id;
+        synchronized (nodes) {
+            return nodeIds.computeIfAbsent(node, key -> {
+                nodes.add(key);
+                return nodes.size() - 1;
+            });
+        }
+    }
+
+    public String getNode(int id) {
+        synchronized (nodes) {
+            return nodes.get(id);
+        }
+    }
+
+    /**
+     * Resolves the contexts a user's permissions should be checked in right now.
+     *
+     * @param user the user
+     * @return the user's active contexts, as an immutable set that can be used as part of a cache key
+     */
+    public Set<Context> getContexts(User user) {
+        return ImmutableSet.copyOf(user.getActiveContexts());
+    }
+
+    /**
+     * Checks a permission node, using a cached result if there is a recent enough one.
+     *
+     * @param user     the user to check
+     * @param contexts the contexts to check in, from {@link #getContexts(User)}
+     * @param node     the id of the node
+     * @return whether the user has the permission
+     */
+    public boolean hasPermission(User user, Set<Context> contexts, int node) {
+        long ttl = TimeUnit.MILLISECONDS.toNanos(FGConfigManager.getInstance().getPermissionCacheTime());
+        if (ttl <= 0) {
+            misses.increment();
+            return user.hasPermission(contexts, getNode(node));
+        }
+        UUID uuid = user.getUniqueId();
+        Stripe stripe = stripeFor(uuid);
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (stripe) {
+            entry = stripe.get(stripe.probe.set(uuid, node, contexts));
+        }
+        if (entry != null && now - entry.time < ttl) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        boolean value = user.hasPermission(contexts, getNode(node));
+        synchronized (stripe) {
+            stripe.put(new Key().set(uuid, node, ImmutableSet.copyOf(contexts)), new Entry(value, now));
+        }
+        return value;
+    }
+
+    public void invalidate(UUID user) {
+        Stripe stripe = stripeFor(user);
+        synchronized (stripe) {
+            stripe.keySet().removeIf(key -> key.user.equals(user));
+        }
+    }
+
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public void resetMetrics() {
+        hits.reset();
+        misses.reset();
+    }
+
+    private Stripe stripeFor(UUID user) {
+        int hash = user.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe extends LinkedHashMap<Key, Entry> {
+
+        /**
+         * Reused for lookups while holding the stripe's lock, so a cache hit doesn't allocate.
+         */
+        private final Key probe = new Key();
+
+        private Stripe() {
+            super(64, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > STRIPE_SIZE;
+        }
+    }
+
+    private static final class Key {
+        private UUID user;
+        private int node;
+        private Set<Context> contexts;
+        private int hash;
+
+        private Key set(UUID user, int node, Set<Context> contexts) {
+            this.user = user;
+            this.node = node;
+            this.contexts = contexts;
+            this.hash = (user.hashCode() * 31 + node) * 31 + contexts.hashCode();
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return node == key.node && user.equals(key.user) && contexts.equals(key.contexts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final boolean value;
+        private final long time;
+
+        private Entry(boolean value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+}
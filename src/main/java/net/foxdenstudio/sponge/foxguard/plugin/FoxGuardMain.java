@@ -33,9 +33,13 @@ import net.foxdenstudio.sponge.foxcore.plugin.state.FCStateManager;
 import net.foxdenstudio.sponge.foxcore.plugin.util.Aliases;
 import net.foxdenstudio.sponge.foxguard.plugin.command.*;
 import net.foxdenstudio.sponge.foxguard.plugin.controller.LogicController;
+import net.foxdenstudio.sponge.foxguard.plugin.controller.message.MessageController;
+import net.foxdenstudio.sponge.foxguard.plugin.event.FGUpdateEvent;
+import net.foxdenstudio.sponge.foxguard.plugin.event.FGUpdateObjectEvent;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.*;
 import net.foxdenstudio.sponge.foxguard.plugin.listener.*;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
 import net.foxdenstudio.sponge.foxguard.plugin.misc.FGContextCalculator;
 import net.foxdenstudio.sponge.foxguard.plugin.object.factory.FGFactoryManager;
 import net.foxdenstudio.sponge.foxguard.plugin.region.world.CuboidRegion;
@@ -47,6 +51,7 @@ import net.foxdenstudio.sponge.foxguard.plugin.state.RegionsStateField;
 import net.foxdenstudio.sponge.foxguard.plugin.state.factory.ControllersStateFieldFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.state.factory.HandlersStateFieldFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.state.factory.RegionsStateFieldFactory;
+import net.foxdenstudio.sponge.foxguard.plugin.util.RegionCacheWarmer;
 import org.slf4j.Logger;
 import org.spongepowered.api.Game;
 import org.spongepowered.api.Sponge;
@@ -64,9 +69,11 @@ import org.spongepowered.api.event.entity.InteractEntityEvent;
 import org.spongepowered.api.event.entity.MoveEntityEvent;
 import org.spongepowered.api.event.entity.SpawnEntityEvent;
 import org.spongepowered.api.event.game.state.*;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.event.world.ExplosionEvent;
 import org.spongepowered.api.event.world.LoadWorldEvent;
 import org.spongepowered.api.event.world.UnloadWorldEvent;
+import org.spongepowered.api.event.world.chunk.UnloadChunkEvent;
 import org.spongepowered.api.plugin.Dependency;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.plugin.PluginContainer;
@@ -83,6 +90,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 
 @Plugin(id = "foxguard",
         name = "FoxGuard",
@@ -126,6 +134,7 @@ public final class FoxGuardMain {
     private boolean loaded = false;
 
     private FCCommandDispatcher fgDispatcher;
+    private RegionCacheWarmer cacheWarmer;
 
     /**
      * @return The current instance of the FoxGuardMain object.
@@ -194,6 +203,7 @@ public final class FoxGuardMain {
 
         fgDispatcher.register(new CommandPriority(), "priority", "prio", "level", "rank");
 
+        fgDispatcher.register(new CommandCache(), "cache");
         fgDispatcher.register(new CommandTest(), "test");
         fgDispatcher.register(new CommandLink2(true), "link2", "connect2", "attach2");
         fgDispatcher.register(new CommandLink2(false), "unlink2", "disconnect2", "detach2");
@@ -219,6 +229,16 @@ public final class FoxGuardMain {
         service.registerContextCalculator(new FGContextCalculator());
     }
 
+    @Listener
+    public void serverAboutToStart(GameAboutToStartServerEvent event) {
+        FGManager.getInstance().getRegionCache().setOwner(Thread.currentThread());
+        int radius = FGConfigManager.getInstance().getPrewarmRadius();
+        if (radius > 0 && cacheWarmer == null) {
+            cacheWarmer = new RegionCacheWarmer(this, FGManager.getInstance().getRegionCache(), radius);
+            cacheWarmer.start();
+        }
+    }
+
     @Listener
     public void serverStarting(GameStartingServerEvent event) {
         logger.info("Loading regions");
@@ -246,6 +266,30 @@ public final class FoxGuardMain {
         logger.info("Unloading world \"" + event.getTargetWorld().getName() + "\"");
         FGStorageManager.getInstance().saveWorldRegions(event.getTargetWorld());
         FGManager.getInstance().unloadWorld(event.getTargetWorld());
+        if (cacheWarmer != null) cacheWarmer.unloadWorld(event.getTargetWorld());
+    }
+
+    @Listener
+    public void chunkUnload(UnloadChunkEvent event) {
+        FGManager.getInstance().unloadChunk(event.getTargetChunk().getWorld(), event.getTargetChunk().getPosition());
+    }
+
+    @Listener(order = Order.PRE)
+    public void objectUpdate(FGUpdateEvent event) {
+        if (event instanceof FGUpdateObjectEvent) {
+            FGManager.getInstance().markChainsDirty(((FGUpdateObjectEvent) event).getTarget());
+        } else {
+            FGManager.getInstance().markChainsDirty();
+        }
+    }
+
+    @Listener
+    public void playerDisconnect(ClientConnectionEvent.Disconnect event) {
+        UUID user = event.getTargetEntity().getUniqueId();
+        FGPermissionCache.getInstance().invalidate(user);
+        for (IHandler handler : FGManager.getInstance().getHandlers()) {
+            handler.onUserDisconnect(user);
+        }
     }
 
     @Listener
@@ -258,6 +302,7 @@ public final class FoxGuardMain {
             logger.info("Loading links for world : \"" + event.getTargetWorld().getName() + "\"");
             FGStorageManager.getInstance().loadWorldRegionLinks(event.getTargetWorld());
         }
+        if (cacheWarmer != null) cacheWarmer.warmSpawn(event.getTargetWorld());
     }
 
     private void registerCoreCommands(FCCommandDispatcher dispatcher) {
@@ -288,7 +333,7 @@ public final class FoxGuardMain {
         manager.registerHandlerFactory(new PermissionHandler.Factory());
         manager.registerHandlerFactory(new DebugHandler.Factory());
 
-        //manager.registerControllerFactory(new MessageController.Factory());
+        manager.registerControllerFactory(new MessageController.Factory());
         manager.registerControllerFactory(new LogicController.Factory());
     }
 
@@ -298,6 +343,7 @@ public final class FoxGuardMain {
      */
     private void registerListeners() {
         eventManager.registerListeners(this, FlagRegistry.getInstance());
+        DenialNotifier.getInstance().start(this);
         eventManager.registerListener(this, ChangeBlockEvent.class, Order.LATE, new BlockChangeListener());
         eventManager.registerListener(this, InteractBlockEvent.class, Order.LATE, new InteractBlockListener());
         eventManager.registerListener(this, InteractEntityEvent.class, Order.LATE, new InteractEntityListener());
@@ -306,6 +352,7 @@ public final class FoxGuardMain {
             PlayerMoveListener pml = new PlayerMoveListener(true);
             eventManager.registerListener(this, MoveEntityEvent.class, pml);
             eventManager.registerListeners(this, pml.new Listeners());
+            pml.start(this);
         }
         eventManager.registerListener(this, ExplosionEvent.class, Order.LATE, new ExplosionListener());
         eventManager.registerListener(this, DamageEntityEvent.class, Order.LATE, new DamageListener());
@@ -0,0 +1,119 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.command;
+
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.plugin.command.FCCommandBase;
+import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
+import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
+import net.foxdenstudio.sponge.foxguard.plugin.FGPermissionCache;
+import net.foxdenstudio.sponge.foxguard.plugin.util.RegionCache;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.GuavaCollectors;
+import org.spongepowered.api.util.StartsWithPredicate;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Optional;
+
+public class CommandCache extends FCCommandBase {
+
+    @Override
+    public CommandResult process(CommandSource source, String arguments) throws CommandException {
+        if (!testPermission(source)) {
+            source.sendMessage(Text.of(TextColors.RED, "You don't have permission to use this command!"));
+            return CommandResult.empty();
+        }
+        AdvCmdParser.ParseResult parse = AdvCmdParser.builder().arguments(arguments).parse();
+        RegionCache cache = FGManager.getInstance().getRegionCache();
+        if (parse.args.length > 0 && parse.args[0].equalsIgnoreCase("clear")) {
+            FGManager.getInstance().clearRegionCache();
+            FGPermissionCache.getInstance().invalidateAll();
+            FGPermissionCache.getInstance().resetMetrics();
+            source.sendMessage(Text.of(TextColors.GREEN, "Cleared the region and permission caches!"));
+            return CommandResult.success();
+        }
+        int max = cache.getMaxEntries();
+        Text.Builder builder = Text.builder();
+        builder.append(Text.of(TextColors.GOLD, "\n-----------------------------------------------------\n"));
+        builder.append(Text.of(TextColors.GREEN, "Cached entries: "));
+        builder.append(Text.of(TextColors.RESET, cache.getResidentCount(), " / ", max > 0 ? max : "unlimited", "\n"));
+        builder.append(Text.of(TextColors.GREEN, "Estimated memory: "));
+        builder.append(Text.of(TextColors.RESET, cache.getEstimatedMemory() / 1024, " KB\n"));
+        FGPermissionCache permissionCache = FGPermissionCache.getInstance();
+        long hits = permissionCache.getHits(), misses = permissionCache.getMisses();
+        builder.append(Text.of(TextColors.GREEN, "Cached permissions: "));
+        builder.append(Text.of(TextColors.RESET, permissionCache.getSize(), "\n"));
+        builder.append(Text.of(TextColors.GREEN, "Permission hits / misses: "));
+        builder.append(Text.of(TextColors.RESET, hits, " / ", misses));
+        if (hits + misses > 0) builder.append(Text.of(TextColors.RESET, " (", hits * 100 / (hits + misses), "% hit rate)"));
+        source.sendMessage(builder.build());
+        return CommandResult.empty();
+    }
+
+    @Override
+    public List<String> getSuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
+        if (!testPermission(source)) return ImmutableList.of();
+        AdvCmdParser.ParseResult parse = AdvCmdParser.builder()
+                .arguments(arguments)
+                .excludeCurrent(true)
+                .autoCloseQuotes(true)
+                .parse();
+        if (parse.current.type.equals(AdvCmdParser.CurrentElement.ElementType.ARGUMENT) && parse.current.index == 0) {
+            return ImmutableList.of("clear").stream()
+                    .filter(new StartsWithPredicate(parse.current.token))
+                    .map(args -> parse.current.prefix + args)
+                    .collect(GuavaCollectors.toImmutableList());
+        }
+        return ImmutableList.of();
+    }
+
+    @Override
+    public boolean testPermission(CommandSource source) {
+        return source.hasPermission("foxguard.command.debug.cache");
+    }
+
+    @Override
+    public Optional<Text> getShortDescription(CommandSource source) {
+        return Optional.of(Text.of("Shows region and permission cache usage."));
+    }
+
+    @Override
+    public Optional<Text> getHelp(CommandSource source) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Text getUsage(CommandSource source) {
+        return Text.of("cache [clear]");
+    }
+}
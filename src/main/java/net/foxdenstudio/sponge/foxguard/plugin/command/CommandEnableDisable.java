@@ -31,8 +31,6 @@ import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.FlagMapper;
 import net.foxdenstudio.sponge.foxcore.plugin.state.FCStateManager;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
-import net.foxdenstudio.sponge.foxguard.plugin.FoxGuardMain;
-import net.foxdenstudio.sponge.foxguard.plugin.event.factory.FGEventFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.GlobalHandler;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
 import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
@@ -101,21 +99,23 @@ public class CommandEnableDisable extends FCCommandBase {
                 FGUtil.getSelectedHandlers(source).forEach(objects::add);
                 int successes = 0;
                 int failures = 0;
+                List<IFGObject> changed = new ArrayList<>();
                 for (IFGObject object : objects) {
                     if (object instanceof GlobalWorldRegion || object instanceof GlobalHandler || object.isEnabled() == this.enableState)
                         failures++;
                     else {
                         object.setIsEnabled(this.enableState);
+                        changed.add(object);
                         successes++;
                     }
                 }
                 FCStateManager.instance().getStateMap().get(source).flush(RegionsStateField.ID, HandlersStateField.ID);
                 if (successes == 1 && failures == 0) {
-                    Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+                    FGUtil.markObjectsUpdated(changed);
                     source.sendMessage(Text.of(TextColors.GREEN, "Successfully " + (this.enableState ? "enabled" : "disabled") + " object!"));
                     return CommandResult.success();
                 } else if (successes > 0) {
-                    Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+                    FGUtil.markObjectsUpdated(changed);
                     source.sendMessage(Text.of(TextColors.GREEN, "Successfully " + (this.enableState ? "enabled" : "disabled") + " objects with "
                             + successes + " successes" + (failures > 0 ? " and " + failures + " failures!" : "!")));
                     return CommandResult.builder().successCount(successes).build();
@@ -138,6 +138,7 @@ public class CommandEnableDisable extends FCCommandBase {
             if (world == null) throw new CommandException(Text.of("Must specify a world!"));
             int successes = 0;
             int failures = 0;
+            List<IFGObject> changed = new ArrayList<>();
             List<IRegion> regions = new ArrayList<>();
             FGUtil.getSelectedRegions(source).forEach(regions::add);
             if (parse.args.length > 1) {
@@ -154,16 +155,17 @@ public class CommandEnableDisable extends FCCommandBase {
                 if (region instanceof IGlobal || region.isEnabled() == this.enableState) failures++;
                 else {
                     region.setIsEnabled(this.enableState);
+                    changed.add(region);
                     successes++;
                 }
             }
             FCStateManager.instance().getStateMap().get(source).flush(RegionsStateField.ID);
             if (successes == 1 && failures == 0) {
-                Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+                FGUtil.markObjectsUpdated(changed);
                 source.sendMessage(Text.of(TextColors.GREEN, "Successfully " + (this.enableState ? "enabled" : "disabled") + " region!"));
                 return CommandResult.success();
             } else if (successes > 0) {
-                Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+                FGUtil.markObjectsUpdated(changed);
                 source.sendMessage(Text.of(TextColors.GREEN, "Successfully " + (this.enableState ? "enabled" : "disabled") + " regions with "
                         + successes + " successes" + (failures > 0 ? " and " + failures + " failures!" : "!")));
                 return CommandResult.builder().successCount(successes).build();
@@ -177,6 +179,7 @@ public class CommandEnableDisable extends FCCommandBase {
             if (parse.args.length < 2) throw new CommandException(Text.of("Must specify a name!"));
             int successes = 0;
             int failures = 0;
+            List<IFGObject> changed = new ArrayList<>();
             List<IHandler> handlers = new ArrayList<>();
             FGUtil.getSelectedHandlers(source).forEach(handlers::add);
             for (String name : Arrays.copyOfRange(parse.args, 1, parse.args.length)) {
@@ -191,16 +194,17 @@ public class CommandEnableDisable extends FCCommandBase {
                 if (handler instanceof IGlobal || handler.isEnabled() == this.enableState) failures++;
                 else {
                     handler.setIsEnabled(this.enableState);
+                    changed.add(handler);
                     successes++;
                 }
             }
             FCStateManager.instance().getStateMap().get(source).flush(HandlersStateField.ID);
             if (successes == 1 && failures == 0) {
-                Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+                FGUtil.markObjectsUpdated(changed);
                 source.sendMessage(Text.of(TextColors.GREEN, "Successfully " + (this.enableState ? "enabled" : "disabled") + " handler!"));
                 return CommandResult.success();
             } else if (successes > 0) {
-                Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+                FGUtil.markObjectsUpdated(changed);
                 source.sendMessage(Text.of(TextColors.GREEN, "Successfully " + (this.enableState ? "enabled" : "disabled") + " handlers with "
                         + successes + " successes" + (failures > 0 ? " and " + failures + " failures!" : "!")));
                 return CommandResult.builder().successCount(successes).build();
@@ -27,11 +27,10 @@ package net.foxdenstudio.sponge.foxguard.plugin.command;
 
 import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.plugin.command.FCCommandBase;
-import net.foxdenstudio.sponge.foxguard.plugin.FoxGuardMain;
 import net.foxdenstudio.sponge.foxguard.plugin.command.link.LinkEntry;
 import net.foxdenstudio.sponge.foxguard.plugin.command.link.LinkageParser;
-import net.foxdenstudio.sponge.foxguard.plugin.event.factory.FGEventFactory;
-import org.spongepowered.api.Sponge;
+import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxguard.plugin.util.FGUtil;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -41,6 +40,7 @@ import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import javax.annotation.Nullable;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -64,15 +64,21 @@ public class CommandLink2 extends FCCommandBase {
         }
         Set<LinkEntry> set = LinkageParser.parseLinkageExpression(arguments, source);
         int[] successes = {0};
+        Set<IFGObject> changed = new HashSet<>();
         set.forEach(entry -> {
+            boolean success;
             if (link) {
-                if (entry.linkable.addHandler(entry.handler)) successes[0]++;
+                success = entry.linkable.addHandler(entry.handler);
             } else {
-                if (entry.linkable.removeHandler(entry.handler)) successes[0]++;
+                success = entry.linkable.removeHandler(entry.handler);
+            }
+            if (success) {
+                successes[0]++;
+                if (entry.linkable instanceof IFGObject) changed.add((IFGObject) entry.linkable);
             }
         });
         if (successes[0] > 0) {
-            Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateEvent(FoxGuardMain.getCause()));
+            FGUtil.markObjectsUpdated(changed);
             source.sendMessage(Text.of(TextColors.GREEN, "Successfully " + (this.link ? "linked" : "unlinked") + " objects with "
                     + successes[0] + " successes!"));
             return CommandResult.builder().successCount(successes[0]).build();
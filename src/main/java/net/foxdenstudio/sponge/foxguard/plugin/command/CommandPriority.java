@@ -94,6 +94,7 @@ public class CommandPriority extends FCCommandBase {
                 if (handler instanceof GlobalHandler) failures++;
                 else {
                     handler.setPriority(machine.process(handler.getPriority()));
+                    FGUtil.markHandlerDirty(handler);
                     successes++;
                 }
             }
@@ -56,16 +56,22 @@ public abstract class ControllerBase extends HandlerBase implements IController
     public boolean addHandler(IHandler handler) {
         if (!FGManager.getInstance().isRegistered(handler)) return false;
         int maxLinks = this.maxLinks();
-        return !(maxLinks >= 0 && this.handlers.size() >= maxLinks) && this.handlers.add(handler);
+        if (maxLinks >= 0 && this.handlers.size() >= maxLinks) return false;
+        this.handlers.add(handler);
+        FGManager.getInstance().addControllerLink(this, handler);
+        return true;
     }
 
     @Override
     public boolean removeHandler(IHandler handler) {
-        return this.handlers.remove(handler);
+        if (!this.handlers.remove(handler)) return false;
+        if (!this.handlers.contains(handler)) FGManager.getInstance().removeControllerLink(this, handler);
+        return true;
     }
 
     @Override
     public void clearHandlers() {
+        this.handlers.forEach(handler -> FGManager.getInstance().removeControllerLink(this, handler));
         this.handlers.clear();
     }
 
@@ -73,12 +79,14 @@ public abstract class ControllerBase extends HandlerBase implements IController
     public void loadLinks(Path directory) {
         try (DB linksDB = DBMaker.fileDB(directory.resolve("links.foxdb").normalize().toString()).make()) {
             List<String> linksList = linksDB.indexTreeList("links", Serializer.STRING).createOrOpen();
+            handlers.forEach(handler -> FGManager.getInstance().removeControllerLink(this, handler));
             handlers.clear();
             linksList.stream()
                     .filter(name -> !this.name.equalsIgnoreCase(name))
                     .map(name -> FGManager.getInstance().gethandler(name))
                     .filter(handler -> handler != null)
                     .forEach(handlers::add);
+            handlers.forEach(handler -> FGManager.getInstance().addControllerLink(this, handler));
 
         }
     }
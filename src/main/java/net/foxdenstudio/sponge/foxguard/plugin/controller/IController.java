@@ -49,4 +49,11 @@ public interface IController extends IHandler, ILinkable {
         return false;
     }
 
+    /**
+     * Called when a handler this controller links to, directly or through other controllers, has changed.
+     * Controllers that compile or cache anything from their handlers should throw it away here.
+     */
+    default void onDependencyUpdate() {
+    }
+
 }
@@ -30,6 +30,7 @@ import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
 import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
 import net.foxdenstudio.sponge.foxguard.plugin.object.factory.IControllerFactory;
@@ -57,7 +58,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static net.foxdenstudio.sponge.foxcore.plugin.util.Aliases.*;
 import static org.spongepowered.api.text.format.TextColors.*;
@@ -76,6 +81,9 @@ public class LogicController extends ControllerBase {
     private Tristate mode = UNDEFINED;
     private boolean shortCircuit = false;
 
+    private final AtomicInteger revision = new AtomicInteger();
+    private volatile Program program;
+
     public LogicController(String name, int priority) {
         super(name, true, priority);
     }
@@ -89,7 +97,111 @@ public class LogicController extends ControllerBase {
 
     @Override
     public EventResult handle(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
-        return EventResult.of(operator.operate(this.handlers, mode, shortCircuit, user, flags, extra));
+        return EventResult.of(handleState(user, flags, extra));
+    }
+
+    @Override
+    public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        return program().root.eval(user, flags, extra);
+    }
+
+    @Override
+    public boolean isUserIndependent() {
+        return program().userIndependent;
+    }
+
+    @Override
+    public boolean isPassiveCacheable() {
+        return program().passiveCacheable;
+    }
+
+    @Override
+    public boolean addHandler(IHandler handler) {
+        boolean added = super.addHandler(handler);
+        if (added) recompile();
+        return added;
+    }
+
+    @Override
+    public boolean removeHandler(IHandler handler) {
+        boolean removed = super.removeHandler(handler);
+        if (removed) recompile();
+        return removed;
+    }
+
+    @Override
+    public void clearHandlers() {
+        super.clearHandlers();
+        recompile();
+    }
+
+    @Override
+    public void loadLinks(Path directory) {
+        super.loadLinks(directory);
+        recompile();
+    }
+
+    @Override
+    public void onDependencyUpdate() {
+        recompile();
+    }
+
+    /**
+     * Throws away the compiled form of this controller. The revision is read before compiling,
+     * so a program compiled while this is called is never kept.
+     */
+    private void recompile() {
+        this.revision.incrementAndGet();
+    }
+
+    /**
+     * Gets the compiled form of this controller, rebuilding it if this controller or any handler under it
+     * has changed since it was last compiled.
+     */
+    private Program program() {
+        Program program = this.program;
+        int revision = this.revision.get();
+        if (program == null || program.revision != revision) {
+            Node root = compile(Collections.newSetFromMap(new IdentityHashMap<>()));
+            if (root.isUserIndependent() && root instanceof OperatorNode) root = new MemoNode(root);
+            program = new Program(revision, root);
+            this.program = program;
+        }
+        return program;
+    }
+
+    /**
+     * Compiles this controller into a tree of nodes, inlining any nested logic controllers
+     * so that evaluation never goes back through {@link #handle(User, FlagBitSet, ExtraContext)}.
+     * Subtrees that only depend on the flags are memoized at the highest point they can be,
+     * and controllers already being compiled further up are left as plain handler calls so cycles don't recurse.
+     */
+    private Node compile(Set<LogicController> compiling) {
+        compiling.add(this);
+        Node[] children = new Node[this.handlers.size()];
+        boolean userIndependent = true;
+        boolean passiveCacheable = true;
+        for (int i = 0; i < children.length; i++) {
+            IHandler handler = this.handlers.get(i);
+            if (handler instanceof LogicController && !compiling.contains(handler)) {
+                children[i] = ((LogicController) handler).compile(compiling);
+            } else {
+                boolean nested = handler instanceof LogicController;
+                children[i] = new HandlerNode(handler,
+                        !nested && handler.isUserIndependent(),
+                        !nested && handler.isPassiveCacheable());
+            }
+            userIndependent &= children[i].isUserIndependent();
+            passiveCacheable &= children[i].isPassiveCacheable();
+        }
+        compiling.remove(this);
+        if (!userIndependent) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i].isUserIndependent() && children[i] instanceof OperatorNode)
+                    children[i] = new MemoNode(children[i]);
+            }
+        }
+        return new OperatorNode(this.operator, this.mode, this.shortCircuit, children, userIndependent, passiveCacheable);
     }
 
     @Override
@@ -152,6 +264,7 @@ public class LogicController extends ControllerBase {
                     Operator op = Operator.from(parse.args[1]);
                     if (op != null) {
                         operator = op;
+                        recompile();
                         return ProcessResult.of(true, Text.of(GREEN, "Successfully set operator to ", op.color, op.toString(), GREEN, "!"));
                     } else
                         return ProcessResult.of(false, Text.of("\"" + parse.args[1] + "\" is not a valid operator!"));
@@ -161,6 +274,7 @@ public class LogicController extends ControllerBase {
                     Tristate tristate = tristateFrom(parse.args[1]);
                     if (tristate != null) {
                         this.mode = tristate;
+                        recompile();
                         return ProcessResult.of(true, Text.builder()
                                 .append(Text.of(GREEN, "Successfully set mode to "))
                                 .append(FCPUtil.readableTristateText(tristate))
@@ -179,6 +293,7 @@ public class LogicController extends ControllerBase {
                     } else
                         return ProcessResult.of(false, Text.of("\"" + parse.args[1] + "\" is not a valid boolean value!"));
                     this.shortCircuit = bool;
+                    recompile();
                     return ProcessResult.of(true, Text.builder()
                             .append(Text.of(GREEN, "Successfully set mode to "))
                             .append(FCPUtil.readableBooleanText(bool))
@@ -255,13 +370,13 @@ public class LogicController extends ControllerBase {
         }
     }
 
-    private enum Operator {
+    enum Operator {
         AND(GREEN) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, User user, FlagBitSet flags, ExtraContext extra) {
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
                 Tristate state = UNDEFINED;
-                for (IHandler handler : handlers) {
-                    Tristate ts = handler.handle(user, flags, extra).getState();
+                for (Node child : children) {
+                    Tristate ts = child.eval(user, flags, extra);
                     if (ts == UNDEFINED) ts = mode;
                     state = state.and(ts);
                     if (shortCircuit && state == FALSE) return FALSE;
@@ -271,10 +386,10 @@ public class LogicController extends ControllerBase {
         },
         OR(AQUA) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, User user, FlagBitSet flags, ExtraContext extra) {
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
                 Tristate state = UNDEFINED;
-                for (IHandler handler : handlers) {
-                    Tristate ts = handler.handle(user, flags, extra).getState();
+                for (Node child : children) {
+                    Tristate ts = child.eval(user, flags, extra);
                     if (ts == UNDEFINED) ts = mode;
                     state = state.or(ts);
                     if (shortCircuit && state == TRUE) return TRUE;
@@ -284,10 +399,10 @@ public class LogicController extends ControllerBase {
         },
         XOR(LIGHT_PURPLE) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, User user, FlagBitSet flags, ExtraContext extra) {
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
                 Tristate state = UNDEFINED;
-                for (IHandler handler : handlers) {
-                    Tristate ts = handler.handle(user, flags, extra).getState();
+                for (Node child : children) {
+                    Tristate ts = child.eval(user, flags, extra);
                     if (ts == UNDEFINED) ts = mode;
                     state = XORMatrix[state.ordinal()][ts.ordinal()];
                 }
@@ -296,9 +411,9 @@ public class LogicController extends ControllerBase {
         },
         NOT(RED) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, User user, FlagBitSet flags, ExtraContext extra) {
-                if (handlers.size() > 0) {
-                    Tristate state = handlers.get(0).handle(user, flags, extra).getState();
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
+                if (children.length > 0) {
+                    Tristate state = children[0].eval(user, flags, extra);
                     if (state == UNDEFINED) state = mode;
                     if (state == TRUE) state = FALSE;
                     else if (state == FALSE) state = TRUE;
@@ -308,10 +423,10 @@ public class LogicController extends ControllerBase {
         },
         NAND(DARK_GREEN) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, User user, FlagBitSet flags, ExtraContext extra) {
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
                 Tristate state = UNDEFINED;
-                for (IHandler handler : handlers) {
-                    Tristate ts = handler.handle(user, flags, extra).getState();
+                for (Node child : children) {
+                    Tristate ts = child.eval(user, flags, extra);
                     if (ts == UNDEFINED) ts = mode;
                     state = state.and(ts);
                     if (shortCircuit && state == FALSE) break;
@@ -323,10 +438,10 @@ public class LogicController extends ControllerBase {
         },
         NOR(DARK_AQUA) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, User user, FlagBitSet flags, ExtraContext extra) {
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
                 Tristate state = UNDEFINED;
-                for (IHandler handler : handlers) {
-                    Tristate ts = handler.handle(user, flags, extra).getState();
+                for (Node child : children) {
+                    Tristate ts = child.eval(user, flags, extra);
                     if (ts == UNDEFINED) ts = mode;
                     state = state.or(ts);
                     if (shortCircuit && state == TRUE) break;
@@ -338,10 +453,10 @@ public class LogicController extends ControllerBase {
         },
         XNOR(DARK_PURPLE) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, User user, FlagBitSet flags, ExtraContext extra) {
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
                 Tristate state = UNDEFINED;
-                for (IHandler handler : handlers) {
-                    Tristate ts = handler.handle(user, flags, extra).getState();
+                for (Node child : children) {
+                    Tristate ts = child.eval(user, flags, extra);
                     if (ts == UNDEFINED) ts = mode;
                     state = XORMatrix[state.ordinal()][ts.ordinal()];
                 }
@@ -352,9 +467,9 @@ public class LogicController extends ControllerBase {
         },
         IGNORE(YELLOW) {
             @Override
-            public Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
-                for (IHandler handler : handlers) {
-                    handler.handle(user, flags, extra);
+            public Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
+                for (Node child : children) {
+                    child.eval(user, flags, extra);
                 }
                 return mode;
             }
@@ -372,7 +487,7 @@ public class LogicController extends ControllerBase {
             this.color = color;
         }
 
-        public abstract Tristate operate(List<IHandler> handlers, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra);
+        public abstract Tristate operate(Node[] children, Tristate mode, boolean shortCircuit, @Nullable User user, FlagBitSet flags, ExtraContext extra);
 
         public static Operator from(String name) {
             for (Operator op : values()) {
@@ -382,6 +497,113 @@ public class LogicController extends ControllerBase {
         }
     }
 
+    private interface Node {
+        Tristate eval(@Nullable User user, FlagBitSet flags, ExtraContext extra);
+
+        boolean isUserIndependent();
+
+        boolean isPassiveCacheable();
+    }
+
+    private static final class HandlerNode implements Node {
+        private final IHandler handler;
+        private final boolean userIndependent;
+        private final boolean passiveCacheable;
+
+        HandlerNode(IHandler handler, boolean userIndependent, boolean passiveCacheable) {
+            this.handler = handler;
+            this.userIndependent = userIndependent;
+            this.passiveCacheable = passiveCacheable;
+        }
+
+        @Override
+        public Tristate eval(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+            return handler.handleState(user, flags, extra);
+        }
+
+        @Override
+        public boolean isUserIndependent() {
+            return userIndependent;
+        }
+
+        @Override
+        public boolean isPassiveCacheable() {
+            return passiveCacheable;
+        }
+    }
+
+    private static final class OperatorNode implements Node {
+        private final Operator operator;
+        private final Tristate mode;
+        private final boolean shortCircuit;
+        private final Node[] children;
+        private final boolean userIndependent;
+        private final boolean passiveCacheable;
+
+        OperatorNode(Operator operator, Tristate mode, boolean shortCircuit, Node[] children, boolean userIndependent, boolean passiveCacheable) {
+            this.operator = operator;
+            this.mode = mode;
+            this.shortCircuit = shortCircuit;
+            this.children = children;
+            this.userIndependent = userIndependent;
+            this.passiveCacheable = passiveCacheable;
+        }
+
+        @Override
+        public Tristate eval(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+            return operator.operate(children, mode, shortCircuit, user, flags, extra);
+        }
+
+        @Override
+        public boolean isUserIndependent() {
+            return userIndependent;
+        }
+
+        @Override
+        public boolean isPassiveCacheable() {
+            return passiveCacheable;
+        }
+    }
+
+    private static final class MemoNode implements Node {
+        private static final ExtraContext EMPTY = ExtraContext.of();
+
+        private final FlagCache<Tristate> memo;
+
+        MemoNode(Node node) {
+            this.memo = new FlagCache<>(flags -> node.eval(null, flags, EMPTY));
+        }
+
+        @Override
+        public Tristate eval(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+            return memo.get(flags);
+        }
+
+        @Override
+        public boolean isUserIndependent() {
+            return true;
+        }
+
+        @Override
+        public boolean isPassiveCacheable() {
+            return true;
+        }
+    }
+
+    private static final class Program {
+        private final int revision;
+        private final Node root;
+        private final boolean userIndependent;
+        private final boolean passiveCacheable;
+
+        Program(int revision, Node root) {
+            this.revision = revision;
+            this.root = root;
+            this.userIndependent = root.isUserIndependent();
+            this.passiveCacheable = root.isPassiveCacheable();
+        }
+    }
+
     public static final class Factory implements IControllerFactory {
 
         public static final String[] LOGIC_ALIASES = {"logic", "logical"};
@@ -22,62 +22,143 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-
 package net.foxdenstudio.sponge.foxguard.plugin.controller.message;
 
 import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
+import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import net.foxdenstudio.sponge.foxguard.plugin.controller.ControllerBase;
+import net.foxdenstudio.sponge.foxguard.plugin.controller.IController;
 import net.foxdenstudio.sponge.foxguard.plugin.controller.util.HandlerWrapper;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.util.MessageEntry;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
 import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
-import net.foxdenstudio.sponge.foxguard.plugin.object.factory.IHandlerFactory;
+import net.foxdenstudio.sponge.foxguard.plugin.object.factory.IControllerFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.FGUtil;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.GuavaCollectors;
+import org.spongepowered.api.util.StartsWithPredicate;
+import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static net.foxdenstudio.sponge.foxcore.plugin.util.Aliases.*;
 
+/**
+ * Passes events through to its linked handler, and sends the user a message picked by the flags and the result.
+ * <p>
+ * Messages are parsed into {@link MessageTemplate}s when they are defined, and the entry lookup is cached per
+ * interned flag set, so an event costs one array read on top of the linked handler.
+ * Sending goes through the {@link DenialNotifier} queue, so each player gets at most one message per window.
+ */
 public class MessageController extends ControllerBase {
 
+    private static final Tristate[] STATES = Tristate.values();
+
     private HandlerWrapper slot;
-    private Map<String, ISendableMessage> messages;
+    private final Map<String, MessageTemplate> messages;
+    private final List<MessageEntry> entries;
+    private final FlagCache<ISendableMessage[]> lookup;
 
+    public MessageController(String name, int priority) {
+        this(name, true, priority);
+    }
 
     public MessageController(String name, boolean isEnabled, int priority) {
         super(name, isEnabled, priority);
-        slot = HandlerWrapper.PASSTHROUGH;
-        messages = new HashMap<>();
+        this.slot = HandlerWrapper.PASSTHROUGH;
+        this.messages = new LinkedHashMap<>();
+        this.entries = new ArrayList<>();
+        this.lookup = new FlagCache<>(flags -> {
+            ISendableMessage[] found = new ISendableMessage[STATES.length];
+            for (MessageEntry entry : MessageController.this.entries) {
+                int state = entry.tristate.ordinal();
+                if (found[state] == null && entry.matches(flags)) {
+                    MessageTemplate template = MessageController.this.messages.get(entry.message);
+                    if (template != null) found[state] = template.getMessage();
+                }
+            }
+            return found;
+        });
     }
 
     @Override
     public EventResult handle(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
-        //TODO: rewrite this class
-        /*EventResult result = slot.handle(user, flags, extra);
-        String messageName = configs.get(new Config(flag, result.getState()));
-        if (messageName != null) {
-            return result;
-        } else {
-            return result;
-        }*/
-        return EventResult.pass();
+        return EventResult.of(handleState(user, flags, extra));
     }
 
     @Override
-    public Text details(CommandSource source, String arguments) {
-        Text.Builder builder = Text.builder();
+    public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        Tristate state = slot.handleState(user, flags, extra);
+        if (user instanceof Player) {
+            ISendableMessage message = lookup.get(flags)[state.ordinal()];
+            if (message != null) DenialNotifier.getInstance().send((Player) user, message);
+        }
+        return state;
+    }
 
+    @Override
+    public boolean isPassiveCacheable() {
+        HandlerWrapper slot = this.slot;
+        return slot.type == HandlerWrapper.Type.CONSTANT || slot.handler.isPassiveCacheable();
+    }
 
+    @Override
+    public Text details(CommandSource source, String arguments) {
+        Text.Builder builder = Text.builder();
+        IHandler handler = getHandler();
+        builder.append(Text.of(TextColors.GOLD, "Handler: ", TextColors.RESET, handler == null ? "none" : handler.getName()));
+        builder.append(Text.NEW_LINE).append(Text.of(TextColors.GOLD,
+                TextActions.suggestCommand("/foxguard md h " + this.name + " define "),
+                TextActions.showText(Text.of("Click to define a message")),
+                "Messages:"));
+        for (Map.Entry<String, MessageTemplate> message : this.messages.entrySet()) {
+            builder.append(Text.NEW_LINE).append(Text.builder()
+                    .append(Text.of("  " + message.getKey() + ": "))
+                    .append(message.getValue().getMessage().preview())
+                    .onHover(TextActions.showText(Text.of("Click to redefine this message")))
+                    .onClick(TextActions.suggestCommand("/foxguard md h " + this.name + " define " + message.getKey() + " "
+                            + message.getValue().getType().name().toLowerCase() + " " + message.getValue().getRaw()))
+                    .build());
+        }
+        builder.append(Text.NEW_LINE).append(Text.of(TextColors.AQUA,
+                TextActions.suggestCommand("/foxguard md h " + this.name + " add "),
+                TextActions.showText(Text.of("Click to add a message entry")),
+                "Entries:"));
+        int index = 0;
+        for (MessageEntry entry : this.entries) {
+            StringBuilder stringBuilder = new StringBuilder();
+            entry.set.stream().sorted().forEach(flag -> stringBuilder.append(flag.name).append(" "));
+            Text.Builder entryBuilder = Text.builder();
+            entryBuilder.append(Text.of("  " + index + ": " + stringBuilder.toString(), TextColors.AQUA, ": "))
+                    .append(FGUtil.readableTristateText(entry.tristate))
+                    .append(Text.of(TextColors.AQUA, " -> ", TextColors.RESET, entry.message))
+                    .onHover(TextActions.showText(Text.of("Click to remove this message entry")))
+                    .onClick(TextActions.suggestCommand("/foxguard md h " + this.name + " remove " + (index++)));
+            builder.append(Text.NEW_LINE).append(entryBuilder.build());
+        }
         return builder.build();
     }
 
@@ -88,31 +169,75 @@ public class MessageController extends ControllerBase {
 
     @Override
     public void save(Path directory) {
+        saveLinks(directory);
+        Path messagesFile = directory.resolve("messages.cfg");
+        ConfigurationLoader<CommentedConfigurationNode> loader =
+                HoconConfigurationLoader.builder().setPath(messagesFile).build();
+        CommentedConfigurationNode root = FCPUtil.getHOCONConfiguration(messagesFile, loader);
+        CommentedConfigurationNode messagesNode = root.getNode("messages");
+        messagesNode.setValue(null);
+        for (Map.Entry<String, MessageTemplate> message : this.messages.entrySet()) {
+            CommentedConfigurationNode node = messagesNode.getNode(message.getKey());
+            node.getNode("type").setValue(message.getValue().getType().name());
+            node.getNode("text").setValue(message.getValue().getRaw());
+        }
+        root.getNode("entries").setValue(this.entries.stream()
+                .map(MessageEntry::serialize)
+                .collect(Collectors.toList())
+        );
+        try {
+            loader.save(root);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
+    public void load(Path directory) {
+        Path messagesFile = directory.resolve("messages.cfg");
+        ConfigurationLoader<CommentedConfigurationNode> loader =
+                HoconConfigurationLoader.builder().setPath(messagesFile).build();
+        CommentedConfigurationNode root = FCPUtil.getHOCONConfiguration(messagesFile, loader);
+        this.messages.clear();
+        for (Map.Entry<Object, ? extends CommentedConfigurationNode> message : root.getNode("messages").getChildrenMap().entrySet()) {
+            MessageTemplate.Type type = MessageTemplate.Type.from(message.getValue().getNode("type").getString(""));
+            if (type == null) type = MessageTemplate.Type.CHAT;
+            this.messages.put(message.getKey().toString(), MessageTemplate.parse(type, message.getValue().getNode("text").getString("")));
+        }
+        List<Optional<String>> optionalEntriesList = root.getNode("entries").getList(o -> {
+            if (o instanceof String) {
+                return Optional.of((String) o);
+            } else return Optional.empty();
+        });
+        this.entries.clear();
+        optionalEntriesList.stream()
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .map(MessageEntry::deserialize)
+                .forEach(this.entries::add);
+        this.lookup.clear();
     }
 
     @Override
     public void loadLinks(Path directory) {
-
+        super.loadLinks(directory);
+        this.slot = this.handlers.isEmpty() ? HandlerWrapper.PASSTHROUGH : new HandlerWrapper(this.handlers.get(0));
     }
 
     @Override
     public int maxLinks() {
-        return -1;
+        return 1;
     }
 
-
     @Override
     public boolean addHandler(IHandler handler) {
-        if (this.handlers.size() < 1) {
-            slot = new HandlerWrapper(handler);
-            return super.addHandler(handler);
-        } else return false;
+        boolean added = super.addHandler(handler);
+        if (added) slot = new HandlerWrapper(handler);
+        return added;
     }
 
     @Override
     public boolean removeHandler(IHandler handler) {
-        if (slot != null && slot.handler == handler) slot = HandlerWrapper.PASSTHROUGH;
+        if (slot.handler == handler) slot = HandlerWrapper.PASSTHROUGH;
         return super.removeHandler(handler);
     }
 
@@ -145,13 +270,128 @@ public class MessageController extends ControllerBase {
     @Override
     public ProcessResult modify(CommandSource source, String arguments) throws CommandException {
         AdvCmdParser.ParseResult parse = AdvCmdParser.builder()
-                .arguments(arguments).parse();
-
-        return ProcessResult.failure();
+                .arguments(arguments)
+                .limit(3)
+                .parse();
+
+        if (parse.args.length < 1) return ProcessResult.of(false, Text.of("Must specify an command!"));
+
+        switch (parse.args[0].toLowerCase()) {
+            case "define": {
+                if (parse.args.length < 2) return ProcessResult.of(false, Text.of("Must specify a message name!"));
+                if (parse.args.length < 3) return ProcessResult.of(false, Text.of("Must specify a message type!"));
+                MessageTemplate.Type type = MessageTemplate.Type.from(parse.args[2]);
+                if (type == null)
+                    return ProcessResult.of(false, Text.of("\"" + parse.args[2] + "\" is not a valid message type!"));
+                if (parse.args.length < 4) return ProcessResult.of(false, Text.of("Must specify the message text!"));
+                this.defineMessage(parse.args[1], MessageTemplate.parse(type, parse.args[3]));
+                return ProcessResult.of(true, Text.of("Successfully defined message!"));
+            }
+            case "undefine": {
+                if (parse.args.length < 2) return ProcessResult.of(false, Text.of("Must specify a message name!"));
+                if (!this.undefineMessage(parse.args[1]))
+                    return ProcessResult.of(false, Text.of("No message exists with that name!"));
+                return ProcessResult.of(true, Text.of("Successfully undefined message!"));
+            }
+            case "add": {
+                AdvCmdParser.ParseResult addParse = AdvCmdParser.builder().arguments(arguments).parse();
+                if (addParse.args.length < 2) return ProcessResult.of(false, Text.of("Must specify a message name!"));
+                String message = addParse.args[1];
+                if (!this.messages.containsKey(message))
+                    return ProcessResult.of(false, Text.of("No message exists with that name!"));
+                Tristate state = null;
+                Set<Flag> flags = new HashSet<>();
+                for (int i = 2; i < addParse.args.length; i++) {
+                    String argument = addParse.args[i];
+                    if (argument.startsWith("=")) {
+                        argument = argument.substring(1);
+                        if (argument.isEmpty())
+                            return ProcessResult.of(false, Text.of("Must supply a tristate value after \'=\'!"));
+                        Tristate newState = tristateFrom(argument);
+                        if (newState != null) {
+                            state = newState;
+                        } else {
+                            return ProcessResult.of(false, Text.of("\"" + argument + "\" is not a valid tristate value!"));
+                        }
+                    } else {
+                        Optional<Flag> flagOptional = FlagRegistry.getInstance().getFlag(argument);
+                        if (flagOptional.isPresent()) {
+                            flags.add(flagOptional.get());
+                        } else {
+                            return ProcessResult.of(false, Text.of("\"" + argument + "\" is not a valid flag!"));
+                        }
+                    }
+                }
+                if (flags.isEmpty()) return ProcessResult.of(false, Text.of("Must specify flags!"));
+                if (state == null) return ProcessResult.of(false, Text.of("Must specify a tristate value!"));
+                this.addMessageEntry(new MessageEntry(flags, state, message));
+                return ProcessResult.of(true, Text.of("Successfully added message entry!"));
+            }
+            case "remove": {
+                if (parse.args.length < 2) return ProcessResult.of(false, Text.of("Must specify an index to remove!"));
+                if (this.entries.isEmpty()) return ProcessResult.of(false, "There are no entries to remove!");
+                try {
+                    int index = Integer.parseInt(parse.args[1]);
+                    if (index < 0) index = 0;
+                    else if (index >= this.entries.size()) index = this.entries.size() - 1;
+                    this.removeMessageEntry(index);
+                    return ProcessResult.of(true, Text.of("Successfully removed message entry!"));
+                } catch (NumberFormatException e) {
+                    return ProcessResult.of(false, Text.of("\"" + parse.args[1] + "\" is not a valid index!"));
+                }
+            }
+            default:
+                return ProcessResult.of(false, Text.of("Not a valid message operation!"));
+        }
     }
 
     @Override
     public List<String> modifySuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
+        AdvCmdParser.ParseResult parse = AdvCmdParser.builder()
+                .arguments(arguments)
+                .excludeCurrent(true)
+                .autoCloseQuotes(true)
+                .parse();
+        if (parse.current.type.equals(AdvCmdParser.CurrentElement.ElementType.ARGUMENT)) {
+            if (parse.current.index == 0) {
+                return ImmutableList.of("define", "undefine", "add", "remove").stream()
+                        .filter(new StartsWithPredicate(parse.current.token))
+                        .map(args -> parse.current.prefix + args)
+                        .collect(GuavaCollectors.toImmutableList());
+            } else if (parse.current.index == 1) {
+                switch (parse.args[0].toLowerCase()) {
+                    case "define":
+                    case "undefine":
+                    case "add":
+                        return this.messages.keySet().stream()
+                                .filter(new StartsWithPredicate(parse.current.token))
+                                .map(args -> parse.current.prefix + args)
+                                .collect(GuavaCollectors.toImmutableList());
+                }
+            } else if (parse.current.index == 2 && parse.args[0].equalsIgnoreCase("define")) {
+                return Arrays.stream(MessageTemplate.Type.values())
+                        .map(type -> type.name().toLowerCase())
+                        .filter(new StartsWithPredicate(parse.current.token))
+                        .map(args -> parse.current.prefix + args)
+                        .collect(GuavaCollectors.toImmutableList());
+            } else if (parse.args[0].equalsIgnoreCase("add")) {
+                if (parse.current.token.startsWith("=")) {
+                    return ImmutableList.of("=allow", "=deny", "=pass").stream()
+                            .filter(new StartsWithPredicate(parse.current.token))
+                            .map(args -> parse.current.prefix + args)
+                            .collect(GuavaCollectors.toImmutableList());
+                } else {
+                    String[] flagArgs = Arrays.copyOfRange(parse.args, 2, parse.args.length);
+                    return FlagRegistry.getInstance().getFlagList().stream()
+                            .map(Flag::getName)
+                            .filter(arg -> !isIn(flagArgs, arg))
+                            .filter(new StartsWithPredicate(parse.current.token))
+                            .map(args -> parse.current.prefix + args)
+                            .collect(GuavaCollectors.toImmutableList());
+                }
+            }
+        } else if (parse.current.type.equals(AdvCmdParser.CurrentElement.ElementType.COMPLETE))
+            return ImmutableList.of(parse.current.prefix + " ");
         return ImmutableList.of();
     }
 
@@ -159,30 +399,58 @@ public class MessageController extends ControllerBase {
         return slot;
     }
 
-    public void setSlot(HandlerWrapper slot) {
-        this.slot = slot;
+    public Map<String, MessageTemplate> getMessages() {
+        return Collections.unmodifiableMap(messages);
+    }
+
+    public List<MessageEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public void defineMessage(String name, MessageTemplate template) {
+        this.messages.put(name, template);
+        this.lookup.clear();
+    }
+
+    /**
+     * Removes a message, along with every entry that refers to it.
+     *
+     * @param name the name of the message
+     * @return whether a message was removed
+     */
+    public boolean undefineMessage(String name) {
+        if (this.messages.remove(name) == null) return false;
+        this.entries.removeIf(entry -> entry.message.equals(name));
+        this.lookup.clear();
+        return true;
     }
 
-    public Map<String, ISendableMessage> getMessages() {
-        return messages;
+    public void addMessageEntry(MessageEntry entry) {
+        this.entries.add(entry);
+        this.lookup.clear();
     }
 
-    public void setMessages(Map<String, ISendableMessage> messages) {
-        this.messages = messages;
+    public void removeMessageEntry(int index) {
+        if (index < 0 || index >= this.entries.size())
+            throw new IndexOutOfBoundsException("Index out of bounds: " + index + " Range: 0-" + (this.entries.size() - 1));
+        this.entries.remove(index);
+        this.lookup.clear();
     }
 
-    public static class Factory implements IHandlerFactory {
+    public static class Factory implements IControllerFactory {
 
         private static final String[] messageAliases = {"message", "mess", "msg"};
 
         @Override
-        public IHandler create(String name, int priority, String arguments, CommandSource source) {
-            return null;
+        public IController create(String name, int priority, String arguments, CommandSource source) throws CommandException {
+            return new MessageController(name, priority);
         }
 
         @Override
-        public IHandler create(Path directory, String name, int priority, boolean isEnabled) {
-            return null;
+        public IController create(Path directory, String name, int priority, boolean isEnabled) {
+            MessageController controller = new MessageController(name, isEnabled, priority);
+            controller.load(directory);
+            return controller;
         }
 
         @Override
@@ -0,0 +1,100 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.controller.message;
+
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.chat.ChatTypes;
+import org.spongepowered.api.text.serializer.TextSerializers;
+import org.spongepowered.api.text.title.Title;
+
+/**
+ * A message as it was typed in, along with the message it was parsed into.
+ * Templates are parsed once when they are defined or loaded, so sending one never touches the serializer.
+ */
+public final class MessageTemplate {
+
+    private final Type type;
+    private final String raw;
+    private final ISendableMessage message;
+
+    private MessageTemplate(Type type, String raw, ISendableMessage message) {
+        this.type = type;
+        this.raw = raw;
+        this.message = message;
+    }
+
+    /**
+     * Parses a template. The text uses {@code &} formatting codes.
+     *
+     * @param type how the message is shown
+     * @param raw  the text of the message
+     * @return the parsed template
+     */
+    public static MessageTemplate parse(Type type, String raw) {
+        Text text = TextSerializers.FORMATTING_CODE.deserialize(raw);
+        ISendableMessage message;
+        switch (type) {
+            case ACTIONBAR:
+                message = new ChatMessage(text, ChatTypes.ACTION_BAR);
+                break;
+            case SYSTEM:
+                message = new ChatMessage(text, ChatTypes.SYSTEM);
+                break;
+            case TITLE:
+                message = new TitleMessage(Title.builder().title(text).build());
+                break;
+            case SUBTITLE:
+                message = new TitleMessage(Title.builder().subtitle(text).build());
+                break;
+            default:
+                message = new ChatMessage(text, ChatTypes.CHAT);
+        }
+        return new MessageTemplate(type, raw, message);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getRaw() {
+        return raw;
+    }
+
+    public ISendableMessage getMessage() {
+        return message;
+    }
+
+    public enum Type {
+        CHAT, ACTIONBAR, SYSTEM, TITLE, SUBTITLE;
+
+        public static Type from(String name) {
+            for (Type type : values()) {
+                if (type.name().equalsIgnoreCase(name)) return type;
+            }
+            return null;
+        }
+    }
+}
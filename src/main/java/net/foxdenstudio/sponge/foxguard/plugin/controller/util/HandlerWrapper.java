@@ -66,6 +66,14 @@ public class HandlerWrapper {
         }
     }
 
+    public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        if (type == Type.WRAPPER) {
+            return handler.handleState(user, flags, extra);
+        } else {
+            return tristate;
+        }
+    }
+
     public enum Type {
         CONSTANT, WRAPPER
     }
@@ -27,62 +27,190 @@ package net.foxdenstudio.sponge.foxguard.plugin.flag;
 
 import com.google.common.collect.ImmutableSet;
 
-import java.util.BitSet;
 import java.util.Set;
 
 /**
  * Created by Fox on 5/25/2016.
+ * <p>
+ * Immutable set of flags backed by two longs.
+ * Every distinct combination is interned, so instances can be compared by reference
+ * and each one carries a small sequential id that caches can index arrays with.
  */
-public class FlagBitSet extends BitSet {
+public final class FlagBitSet {
 
-    public FlagBitSet() {
-        super(FlagRegistry.getInstance().getNumFlags());
+    public static final int MAX_FLAGS = 128;
+
+    private static final Object LOCK = new Object();
+    private static volatile FlagBitSet[] table = new FlagBitSet[64];
+    private static int count = 0;
+
+    private static final FlagBitSet EMPTY = intern(0L, 0L);
+
+    private final long lo;
+    private final long hi;
+    private final int id;
+    private volatile Set<Flag> flagSet;
+
+    private FlagBitSet(long lo, long hi, int id) {
+        this.lo = lo;
+        this.hi = hi;
+        this.id = id;
     }
 
-    public FlagBitSet(Flag... flags) {
-        this();
+    public static FlagBitSet empty() {
+        return EMPTY;
+    }
+
+    public static FlagBitSet of(Flag... flags) {
+        long lo = 0, hi = 0;
         for (Flag flag : flags) {
-            this.set(flag.id);
+            if (flag.id < 64) lo |= 1L << flag.id;
+            else hi |= 1L << flag.id;
         }
+        return intern(lo, hi);
     }
 
-    public FlagBitSet(Set<Flag> flags) {
-        this();
+    public static FlagBitSet of(Set<Flag> flags) {
+        long lo = 0, hi = 0;
         for (Flag flag : flags) {
-            this.set(flag.id);
+            if (flag.id < 64) lo |= 1L << flag.id;
+            else hi |= 1L << flag.id;
+        }
+        return intern(lo, hi);
+    }
+
+    /**
+     * Returns the number of distinct flag combinations interned so far.
+     * Every id handed out by {@link #getId()} is below this value.
+     *
+     * @return the number of interned flag sets
+     */
+    public static int getInternedCount() {
+        synchronized (LOCK) {
+            return count;
+        }
+    }
+
+    private static int hash(long lo, long hi) {
+        long h = lo * 0x9E3779B97F4A7C15L ^ hi * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static FlagBitSet intern(long lo, long hi) {
+        FlagBitSet[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash(lo, hi) & mask; ; i = (i + 1) & mask) {
+            FlagBitSet set = t[i];
+            if (set == null) break;
+            if (set.lo == lo && set.hi == hi) return set;
         }
+        synchronized (LOCK) {
+            t = table;
+            mask = t.length - 1;
+            int i = hash(lo, hi) & mask;
+            for (; ; i = (i + 1) & mask) {
+                FlagBitSet set = t[i];
+                if (set == null) break;
+                if (set.lo == lo && set.hi == hi) return set;
+            }
+            FlagBitSet set = new FlagBitSet(lo, hi, count++);
+            if (count * 2 > t.length) {
+                FlagBitSet[] resized = new FlagBitSet[t.length * 2];
+                int newMask = resized.length - 1;
+                for (FlagBitSet old : t) {
+                    if (old == null) continue;
+                    int j = hash(old.lo, old.hi) & newMask;
+                    while (resized[j] != null) j = (j + 1) & newMask;
+                    resized[j] = old;
+                }
+                int j = hash(lo, hi) & newMask;
+                while (resized[j] != null) j = (j + 1) & newMask;
+                resized[j] = set;
+                table = resized;
+            } else {
+                t[i] = set;
+            }
+            return set;
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean get(int index) {
+        if (index < 0 || index >= MAX_FLAGS) return false;
+        return index < 64 ? (lo & (1L << index)) != 0 : (hi & (1L << index)) != 0;
     }
 
     public boolean get(Flag flag) {
         return this.get(flag.id);
     }
 
-    public void set(Flag flag) {
-        this.set(flag.id);
+    public FlagBitSet with(Flag flag) {
+        return this.with(flag, true);
+    }
+
+    public FlagBitSet with(Flag flag, boolean value) {
+        long bit = 1L << flag.id;
+        long lo = this.lo, hi = this.hi;
+        if (flag.id < 64) lo = value ? lo | bit : lo & ~bit;
+        else hi = value ? hi | bit : hi & ~bit;
+        if (lo == this.lo && hi == this.hi) return this;
+        return intern(lo, hi);
+    }
+
+    public FlagBitSet without(Flag flag) {
+        return this.with(flag, false);
+    }
+
+    public boolean containsAll(FlagBitSet set) {
+        return (set.lo & ~this.lo) == 0 && (set.hi & ~this.hi) == 0;
+    }
+
+    public boolean isEmpty() {
+        return lo == 0 && hi == 0;
     }
 
-    public void set(Flag flag, boolean value) {
-        this.set(flag.id, value);
+    public int cardinality() {
+        return Long.bitCount(lo) + Long.bitCount(hi);
     }
 
     public Set<Flag> toFlagSet() {
-        ImmutableSet.Builder<Flag> builder = ImmutableSet.builder();
-        FlagRegistry registry = FlagRegistry.getInstance();
-        int index = -1;
-        while ((index = this.nextSetBit(index + 1)) >= 0) {
-            builder.add(registry.getFlag(index));
+        Set<Flag> set = this.flagSet;
+        if (set == null) {
+            ImmutableSet.Builder<Flag> builder = ImmutableSet.builder();
+            FlagRegistry registry = FlagRegistry.getInstance();
+            for (int i = 0; i < MAX_FLAGS; i++) {
+                if (this.get(i)) builder.add(registry.getFlag(i));
+            }
+            this.flagSet = set = builder.build();
         }
-        return builder.build();
+        return set;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FlagBitSet)) return false;
+        FlagBitSet that = (FlagBitSet) o;
+        return lo == that.lo && hi == that.hi;
     }
 
-    boolean contains(BitSet set) {
-        FlagBitSet temp = (FlagBitSet) clone();
-        temp.or(set);
-        return this.equals(temp);
+    @Override
+    public int hashCode() {
+        return hash(lo, hi);
     }
 
     @Override
-    public FlagBitSet clone() {
-        return (FlagBitSet) super.clone();
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < MAX_FLAGS; i++) {
+            if (this.get(i)) {
+                if (builder.length() > 1) builder.append(", ");
+                builder.append(i);
+            }
+        }
+        return builder.append("}").toString();
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.flag;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Cache of values keyed by interned {@link FlagBitSet}s.
+ * Values live in a flat array indexed by {@link FlagBitSet#getId()}, so a hit is a single array read.
+ * Null values are cached as well.
+ */
+public final class FlagCache<V> {
+
+    private static final Object NULL = new Object();
+
+    private final Function<FlagBitSet, V> loader;
+    private volatile Object[] values;
+
+    public FlagCache(Function<FlagBitSet, V> loader) {
+        this.loader = loader;
+        this.values = new Object[Math.max(16, FlagBitSet.getInternedCount())];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(FlagBitSet flags) {
+        int id = flags.getId();
+        Object[] values = this.values;
+        if (id < values.length) {
+            Object value = values[id];
+            if (value != null) return value == NULL ? null : (V) value;
+        }
+        V value = loader.apply(flags);
+        put(id, value == null ? NULL : value);
+        return value;
+    }
+
+    public boolean contains(FlagBitSet flags) {
+        Object[] values = this.values;
+        int id = flags.getId();
+        return id < values.length && values[id] != null;
+    }
+
+    public synchronized void clear() {
+        this.values = new Object[this.values.length];
+    }
+
+    private synchronized void put(int id, Object value) {
+        Object[] values = this.values;
+        if (id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+            this.values = values;
+        }
+        values[id] = value;
+    }
+}
@@ -75,6 +75,8 @@ public class FlagRegistry {
             name += "_";
         }
         if (flagMap.containsKey(name)) return null;
+        if (nextAvailableIndex >= FlagBitSet.MAX_FLAGS)
+            throw new IllegalStateException("Flag limit of " + FlagBitSet.MAX_FLAGS + " reached! Cannot register flag \"" + name + "\"");
         Flag flag = new Flag(name, nextAvailableIndex);
         nextAvailableIndex++;
         flagList.add(flag);
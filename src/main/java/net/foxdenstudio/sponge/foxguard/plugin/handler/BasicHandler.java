@@ -38,6 +38,7 @@ import net.foxdenstudio.sponge.foxguard.plugin.FGStorageManager;
 import net.foxdenstudio.sponge.foxguard.plugin.FoxGuardMain;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.util.Operation;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.util.TristateEntry;
@@ -72,6 +73,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static net.foxdenstudio.sponge.foxcore.plugin.util.Aliases.*;
@@ -97,16 +99,15 @@ public class BasicHandler extends HandlerBase {
     private final Group defaultGroup;
     private final List<TristateEntry> defaultPermissions;
 
-    private final Map<Group, Map<FlagBitSet, Tristate>> groupPermCache;
-    private final Map<FlagBitSet, Tristate> defaultPermCache;
-    private final Map<Set<Group>, Map<FlagBitSet, Tristate>> groupSetPermCache;
-    private final Map<UUID, Set<Group>> userGroupCache;
-    private final Map<UUID, Map<FlagBitSet, Tristate>> userPermCache;
+    private final Map<Group, FlagCache<Tristate>> groupPermCache;
+    private final FlagCache<Tristate> defaultPermCache;
+    private final Map<Set<Group>, FlagCache<Tristate>> groupSetPermCache;
+    private final Map<UUID, Set<Group>> userGroups;
 
     private PassiveSetting passiveSetting = PassiveSetting.PASSTHROUGH;
     private Group passiveGroup;
-    private Map<FlagBitSet, Tristate> passiveGroupCacheRef;
-    private final Map<FlagBitSet, Tristate> passivePermCache;
+    private FlagCache<Tristate> passiveGroupCacheRef;
+    private final FlagCache<Tristate> passivePermCache;
 
     public BasicHandler(String name, int priority) {
         this(name, true, priority,
@@ -131,106 +132,43 @@ public class BasicHandler extends HandlerBase {
         this.groupPermCache = new CacheMap<>((k1, m1) -> {
             if (k1 instanceof Group) {
                 List<TristateEntry> entries = BasicHandler.this.groupPermissions.get(k1);
-                Map<FlagBitSet, Tristate> map = new CacheMap<>((k2, m2) -> {
-                    if (k2 instanceof FlagBitSet) {
-                        FlagBitSet flags = (FlagBitSet) k2;
-                        Tristate state = null;
-                        for (TristateEntry entry : entries) {
-                            if (flags.toFlagSet().containsAll(entry.set)) {
-                                state = entry.tristate;
-                                break;
-                            }
+                FlagCache<Tristate> map = new FlagCache<>(flags -> {
+                    for (TristateEntry entry : entries) {
+                        if (entry.matches(flags)) {
+                            return entry.tristate;
                         }
-                        m2.put(flags, state);
-                        return state;
-                    } else return null;
-                });
-                m1.put((Group) k1, map);
-                return map;
-            } else return null;
-        });
-        this.defaultPermCache = new CacheMap<>((k, m) -> {
-            if (k instanceof FlagBitSet) {
-                FlagBitSet flags = (FlagBitSet) k;
-                Tristate state = Tristate.UNDEFINED;
-                for (TristateEntry entry : BasicHandler.this.defaultPermissions) {
-                    if (flags.toFlagSet().containsAll(entry.set)) {
-                        state = entry.tristate;
-                        break;
                     }
-                }
-                m.put(flags, state);
-                return state;
-            } else return null;
-        });
-        this.groupSetPermCache = new CacheMap<>((k1, m1) -> {
-            if (k1 instanceof Set) {
-                for (Object o : (Set) k1) {
-                    if (!(o instanceof Group)) return null;
-                }
-                Set<Group> set = (Set<Group>) k1;
-                List<Group> list = new ArrayList<>(set);
-                Collections.sort(list, (g1, g2) -> this.groups.indexOf(g1) - this.groups.indexOf(g2));
-                Map<FlagBitSet, Tristate> map = new CacheMap<>((k2, m2) -> {
-                    if (k2 instanceof FlagBitSet) {
-                        Tristate state = null;
-                        FlagBitSet flags = (FlagBitSet) k2;
-                        for (Group group : list) {
-                            state = this.groupPermCache.get(group).get(flags);
-                            if (state != null) break;
-                        }
-                        if (state == null) state = this.defaultPermCache.get(flags);
-                        m2.put(flags, state);
-                        return state;
-                    } else return null;
+                    return null;
                 });
-                m1.put(set, map);
+                m1.put((Group) k1, map);
                 return map;
             } else return null;
         });
-        this.userGroupCache = new CacheMap<>((k, m) -> {
-            if (k instanceof UUID) {
-                UUID user = ((UUID) k);
-                Set<Group> userGroups = this.groups.stream().filter(group -> group.users.contains(user)).collect(GuavaCollectors.toImmutableSet());
-                m.put(user, userGroups);
-                return userGroups;
-            } else return null;
-        });
-        this.userPermCache = new CacheMap<>((k, m) -> {
-            if (k instanceof UUID) {
-                UUID user = ((UUID) k);
-                Set<Group> userGroups = this.userGroupCache.get(user);
-                Map<FlagBitSet, Tristate> permCache;
-                if (userGroups.size() == 0)
-                    permCache = this.defaultPermCache;
-                else {
-                    permCache = this.groupSetPermCache.get(userGroups);
+        this.defaultPermCache = new FlagCache<>(flags -> {
+            for (TristateEntry entry : BasicHandler.this.defaultPermissions) {
+                if (entry.matches(flags)) {
+                    return entry.tristate;
                 }
-                m.put(user, permCache);
-                return permCache;
-            } else return null;
+            }
+            return Tristate.UNDEFINED;
         });
-        this.passivePermCache = new CacheMap<>((k, m) -> {
-            if (k instanceof FlagBitSet) {
-                FlagBitSet flags = (FlagBitSet) k;
-                Tristate state = Tristate.UNDEFINED;
-                switch (passiveSetting) {
-                    case ALLOW:
-                        state = TRUE;
-                        break;
-                    case DENY:
-                        state = FALSE;
-                        break;
-                    case GROUP:
-                        state = passiveGroupCacheRef.get(flags);
-                        break;
-                    case DEFAULT:
-                        state = defaultPermCache.get(flags);
-                        break;
-                }
-                m.put(flags, state);
-                return state;
-            } else return null;
+        this.groupSetPermCache = new ConcurrentHashMap<>();
+        this.userGroups = new ConcurrentHashMap<>();
+        for (Group group : this.groups) {
+            group.users.forEach(this::indexUser);
+        }
+        this.passivePermCache = new FlagCache<>(flags -> {
+            switch (passiveSetting) {
+                case ALLOW:
+                    return TRUE;
+                case DENY:
+                    return FALSE;
+                case GROUP:
+                    return passiveGroupCacheRef.get(flags);
+                case DEFAULT:
+                    return defaultPermCache.get(flags);
+            }
+            return Tristate.UNDEFINED;
         });
     }
 
@@ -1020,8 +958,15 @@ public class BasicHandler extends HandlerBase {
 
     @Override
     public EventResult handle(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
-        if (user == null) return EventResult.of(this.passivePermCache.get(flags));
-        else return EventResult.of(this.userPermCache.get(user.getUniqueId()).get(flags));
+        return EventResult.of(handleState(user, flags, extra));
+    }
+
+    @Override
+    public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        Tristate state;
+        if (user == null) state = this.passivePermCache.get(flags);
+        else state = getUserPermCache(user.getUniqueId()).get(flags);
+        return state == null ? UNDEFINED : state;
     }
 
     @Override
@@ -1246,15 +1191,14 @@ public class BasicHandler extends HandlerBase {
         if (this.groups.contains(group)) {
             this.groupPermissions.remove(group);
             this.groupPermCache.remove(group);
-            group.users.forEach(this.userGroupCache::remove);
-            group.users.forEach(this.userPermCache::remove);
             Set<Set<Group>> groupSuperSet = new HashSet<>();
-            for (Map.Entry<Set<Group>, Map<FlagBitSet, Tristate>> entry : this.groupSetPermCache.entrySet()) {
+            for (Map.Entry<Set<Group>, FlagCache<Tristate>> entry : this.groupSetPermCache.entrySet()) {
                 Set<Group> key = entry.getKey();
                 if (key.contains(group)) groupSuperSet.add(key);
             }
             groupSuperSet.forEach(this.groupSetPermCache::remove);
             this.groups.remove(group);
+            group.users.forEach(this::indexUser);
             if (group.equals(passiveGroup)) this.setPassiveSetting(PassiveSetting.PASSTHROUGH);
             return true;
         }
@@ -1277,9 +1221,8 @@ public class BasicHandler extends HandlerBase {
             if (index < 0) index = 0;
             if (index > this.groups.size()) index = this.groups.size();
             this.groups.add(index, group);
-            group.users.forEach(this.userPermCache::remove);
             Set<Set<Group>> groupSuperSet = new HashSet<>();
-            for (Map.Entry<Set<Group>, Map<FlagBitSet, Tristate>> entry : this.groupSetPermCache.entrySet()) {
+            for (Map.Entry<Set<Group>, FlagCache<Tristate>> entry : this.groupSetPermCache.entrySet()) {
                 Set<Group> key = entry.getKey();
                 if (key.contains(group)) groupSuperSet.add(key);
             }
@@ -1306,8 +1249,7 @@ public class BasicHandler extends HandlerBase {
             return false;
         } else {
             group.users.add(user);
-            this.userPermCache.remove(user);
-            this.userGroupCache.remove(user);
+            if (group != defaultGroup) indexUser(user);
             return true;
         }
     }
@@ -1320,18 +1262,54 @@ public class BasicHandler extends HandlerBase {
         if (!group.users.contains(user)) {
             return false;
         } else if (group.users.remove(user)) {
-            this.userGroupCache.remove(user);
-            this.userPermCache.remove(user);
+            if (group != defaultGroup) indexUser(user);
             return true;
         } else return false;
     }
 
     public void clearUsers(Group group) {
-        for (UUID user : group.users) {
-            this.userGroupCache.remove(user);
-            this.userPermCache.remove(user);
-        }
+        Set<UUID> users = new HashSet<>(group.users);
         group.users.clear();
+        for (UUID user : users) {
+            if (group != defaultGroup) indexUser(user);
+        }
+    }
+
+    @Override
+    public boolean isPassiveCacheable() {
+        return true;
+    }
+
+    private void indexUser(UUID user) {
+        Set<Group> userGroups = this.groups.stream()
+                .filter(group -> group.users.contains(user))
+                .collect(GuavaCollectors.toImmutableSet());
+        if (userGroups.isEmpty()) this.userGroups.remove(user);
+        else this.userGroups.put(user, userGroups);
+    }
+
+    /**
+     * Gets the permissions of a user's group set. Only users that are in a group have an entry in the index,
+     * so anyone else, including users that never connect, costs nothing to look up.
+     */
+    private FlagCache<Tristate> getUserPermCache(UUID user) {
+        Set<Group> userGroups = this.userGroups.get(user);
+        if (userGroups == null) return this.defaultPermCache;
+        else return this.groupSetPermCache.computeIfAbsent(userGroups, this::loadGroupSetPermCache);
+    }
+
+    private FlagCache<Tristate> loadGroupSetPermCache(Set<Group> set) {
+        List<Group> list = new ArrayList<>(set);
+        Collections.sort(list, (g1, g2) -> this.groups.indexOf(g1) - this.groups.indexOf(g2));
+        return new FlagCache<>(flags -> {
+            Tristate state = null;
+            for (Group group : list) {
+                state = this.groupPermCache.get(group).get(flags);
+                if (state != null) break;
+            }
+            if (state == null) state = this.defaultPermCache.get(flags);
+            return state;
+        });
     }
 
     public boolean addFlagEntry(Group group, TristateEntry entry) {
@@ -1464,14 +1442,12 @@ public class BasicHandler extends HandlerBase {
     private void clearFlagCacheForGroup(Group group) {
         if (group == defaultGroup) {
             this.defaultPermCache.clear();
-            this.userPermCache.clear();
             this.groupSetPermCache.clear();
             if (this.passiveSetting == PassiveSetting.DEFAULT) this.passivePermCache.clear();
         } else {
             this.groupPermCache.get(group).clear();
-            group.users.forEach(this.userPermCache::remove);
             Set<Set<Group>> groupSuperSet = new HashSet<>();
-            for (Map.Entry<Set<Group>, Map<FlagBitSet, Tristate>> cacheEntry : this.groupSetPermCache.entrySet()) {
+            for (Map.Entry<Set<Group>, FlagCache<Tristate>> cacheEntry : this.groupSetPermCache.entrySet()) {
                 Set<Group> key = cacheEntry.getKey();
                 if (key.contains(group)) groupSuperSet.add(key);
             }
@@ -56,6 +56,11 @@ public class EconomyHandler extends HandlerBase {
         return EventResult.pass();
     }
 
+    @Override
+    public boolean isPassiveCacheable() {
+        return true;
+    }
+
     @Override
     public String getShortTypeName() {
         return "Econ";
@@ -33,12 +33,15 @@ import net.foxdenstudio.sponge.foxcore.plugin.command.util.FlagMapper;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.util.Aliases;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
+import net.foxdenstudio.sponge.foxguard.plugin.FGPermissionCache;
 import net.foxdenstudio.sponge.foxguard.plugin.FGStorageManager;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.util.Operation;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.util.TristateEntry;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.util.UserMemo;
 import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
 import net.foxdenstudio.sponge.foxguard.plugin.object.factory.IHandlerFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
@@ -53,6 +56,7 @@ import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColor;
@@ -94,9 +98,10 @@ public class GroupHandler extends HandlerBase {
     private final Group defaultGroup;
     private final List<TristateEntry> defaultPermissions;
 
-    private final Map<Group, Map<FlagBitSet, Tristate>> groupPermCache;
-    private final Map<FlagBitSet, Tristate> defaultPermCache;
-    private final Map<Set<Group>, Map<FlagBitSet, Tristate>> groupSetPermCache;
+    private final Map<Group, FlagCache<Tristate>> groupPermCache;
+    private final FlagCache<Tristate> defaultPermCache;
+    private final Map<Set<Group>, FlagCache<Tristate>> groupSetPermCache;
+    private final UserMemo<FlagCache<Tristate>> userCache = new UserMemo<>(this::loadUserPermCache);
 
     public GroupHandler(String name, int priority) {
         this(name, true, priority,
@@ -121,37 +126,25 @@ public class GroupHandler extends HandlerBase {
         this.groupPermCache = new CacheMap<>((k1, m1) -> {
             if (k1 instanceof Group) {
                 List<TristateEntry> entries = GroupHandler.this.groupPermissions.get(k1);
-                Map<FlagBitSet, Tristate> map = new CacheMap<>((k2, m2) -> {
-                    if (k2 instanceof FlagBitSet) {
-                        FlagBitSet flags = (FlagBitSet) k2;
-                        Tristate state = null;
-                        for (TristateEntry entry : entries) {
-                            if (flags.toFlagSet().containsAll(entry.set)) {
-                                state = entry.tristate;
-                                break;
-                            }
+                FlagCache<Tristate> map = new FlagCache<>(flags -> {
+                    for (TristateEntry entry : entries) {
+                        if (entry.matches(flags)) {
+                            return entry.tristate;
                         }
-                        m2.put(flags, state);
-                        return state;
-                    } else return null;
+                    }
+                    return null;
                 });
                 m1.put((Group) k1, map);
                 return map;
             } else return null;
         });
-        this.defaultPermCache = new CacheMap<>((k, m) -> {
-            if (k instanceof FlagBitSet) {
-                FlagBitSet flags = (FlagBitSet) k;
-                Tristate state = Tristate.UNDEFINED;
-                for (TristateEntry entry : GroupHandler.this.defaultPermissions) {
-                    if (flags.toFlagSet().containsAll(entry.set)) {
-                        state = entry.tristate;
-                        break;
-                    }
+        this.defaultPermCache = new FlagCache<>(flags -> {
+            for (TristateEntry entry : GroupHandler.this.defaultPermissions) {
+                if (entry.matches(flags)) {
+                    return entry.tristate;
                 }
-                m.put(flags, state);
-                return state;
-            } else return null;
+            }
+            return Tristate.UNDEFINED;
         });
         this.groupSetPermCache = new CacheMap<>((k1, m1) -> {
             if (k1 instanceof Set) {
@@ -161,23 +154,26 @@ public class GroupHandler extends HandlerBase {
                 Set<Group> set = (Set<Group>) k1;
                 List<Group> list = new ArrayList<>(set);
                 Collections.sort(list, (g1, g2) -> this.groups.indexOf(g1) - this.groups.indexOf(g2));
-                Map<FlagBitSet, Tristate> map = new CacheMap<>((k2, m2) -> {
-                    if (k2 instanceof FlagBitSet) {
-                        Tristate state = null;
-                        FlagBitSet flags = (FlagBitSet) k2;
-                        for (Group group : list) {
-                            state = this.groupPermCache.get(group).get(flags);
-                            if (state != null) break;
-                        }
-                        if (state == null) state = this.defaultPermCache.get(flags);
-                        m2.put(flags, state);
-                        return state;
-                    } else return null;
+                FlagCache<Tristate> map = new FlagCache<>(flags -> {
+                    Tristate state = null;
+                    for (Group group : list) {
+                        state = this.groupPermCache.get(group).get(flags);
+                        if (state != null) break;
+                    }
+                    if (state == null) state = this.defaultPermCache.get(flags);
+                    return state;
                 });
                 m1.put(set, map);
                 return map;
             } else return null;
         });
+        updateNodes();
+    }
+
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        invalidateUserCache();
     }
 
     public ProcessResult modify(CommandSource source, String arguments) throws CommandException {
@@ -212,6 +208,7 @@ public class GroupHandler extends HandlerBase {
                             }
                             group.specialPermission = true;
                             group.permission = permissionString;
+                            invalidateUserCache();
                         }
                     }
                     if (parse.flags.containsKey("color")) {
@@ -273,6 +270,7 @@ public class GroupHandler extends HandlerBase {
                             group.specialPermission = true;
                             group.permission = permissionString;
                         }
+                        invalidateUserCache();
                     }
                     if (parse.flags.containsKey("color")) {
                         String colorString = parse.flags.get("color");
@@ -800,20 +798,47 @@ public class GroupHandler extends HandlerBase {
     @Override
     public EventResult handle(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
         if (user == null) return EventResult.pass();
-        else {
-            Set<Group> set = new HashSet<>();
-            final String prefix = "foxguard.handler." + this.name.toLowerCase() + ".";
-            for (Group g : this.groups) {
-                if (g.specialPermission) {
-                    if (user.hasPermission(g.permission)) set.add(g);
-                } else {
-                    if (user.hasPermission(prefix + g.name)) set.add(g);
-                }
-            }
-            return EventResult.of(this.groupSetPermCache.get(set).get(flags));
+        else return EventResult.of(handleState(user, flags, extra));
+    }
+
+    @Override
+    public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        if (user == null) return Tristate.UNDEFINED;
+        else return this.userCache.get(user).get(flags);
+    }
+
+    @Override
+    public void onUserDisconnect(UUID user) {
+        this.userCache.invalidate(user);
+    }
+
+    @Override
+    public boolean isPassiveCacheable() {
+        return true;
+    }
+
+    private FlagCache<Tristate> loadUserPermCache(User user, Set<Context> contexts) {
+        FGPermissionCache permissionCache = FGPermissionCache.getInstance();
+        Set<Group> set = new HashSet<>();
+        for (Group g : this.groups) {
+            if (permissionCache.hasPermission(user, contexts, g.nodeId)) set.add(g);
+        }
+        return this.groupSetPermCache.get(set);
+    }
+
+    private void updateNodes() {
+        final String prefix = "foxguard.handler." + this.name.toLowerCase() + ".";
+        FGPermissionCache permissionCache = FGPermissionCache.getInstance();
+        for (Group g : this.groups) {
+            g.nodeId = permissionCache.getNodeId(g.specialPermission ? g.permission : prefix + g.name);
         }
     }
 
+    private void invalidateUserCache() {
+        updateNodes();
+        this.userCache.clear();
+    }
+
     @Override
     public String getShortTypeName() {
         return "Group";
@@ -945,6 +970,7 @@ public class GroupHandler extends HandlerBase {
         Group group = new Group(name);
         this.groups.add(group);
         this.groupPermissions.put(group, new ArrayList<>());
+        invalidateUserCache();
         return Optional.of(group);
     }
 
@@ -965,6 +991,7 @@ public class GroupHandler extends HandlerBase {
         Group group = new Group(name);
         this.groups.add(group);
         this.groupPermissions.put(group, new ArrayList<>());
+        invalidateUserCache();
         return Optional.of(group);
     }
 
@@ -985,12 +1012,13 @@ public class GroupHandler extends HandlerBase {
             this.groupPermissions.remove(group);
             this.groupPermCache.remove(group);
             Set<Set<Group>> groupSuperSet = new HashSet<>();
-            for (Map.Entry<Set<Group>, Map<FlagBitSet, Tristate>> entry : this.groupSetPermCache.entrySet()) {
+            for (Map.Entry<Set<Group>, FlagCache<Tristate>> entry : this.groupSetPermCache.entrySet()) {
                 Set<Group> key = entry.getKey();
                 if (key.contains(group)) groupSuperSet.add(key);
             }
             groupSuperSet.forEach(this.groupSetPermCache::remove);
             this.groups.remove(group);
+            invalidateUserCache();
             return true;
         }
         return false;
@@ -1013,11 +1041,12 @@ public class GroupHandler extends HandlerBase {
             if (index > this.groups.size()) index = this.groups.size();
             this.groups.add(index, group);
             Set<Set<Group>> groupSuperSet = new HashSet<>();
-            for (Map.Entry<Set<Group>, Map<FlagBitSet, Tristate>> entry : this.groupSetPermCache.entrySet()) {
+            for (Map.Entry<Set<Group>, FlagCache<Tristate>> entry : this.groupSetPermCache.entrySet()) {
                 Set<Group> key = entry.getKey();
                 if (key.contains(group)) groupSuperSet.add(key);
             }
             groupSuperSet.forEach(this.groupSetPermCache::remove);
+            invalidateUserCache();
             return true;
         } else return false;
     }
@@ -1027,6 +1056,7 @@ public class GroupHandler extends HandlerBase {
         if (this.groups.contains(group)) {
             if (groupExists(newName)) return false;
             group.name = newName.toLowerCase();
+            invalidateUserCache();
             return true;
         } else return false;
     }
@@ -1138,13 +1168,13 @@ public class GroupHandler extends HandlerBase {
         } else {
             this.groupPermCache.get(group).clear();
             Set<Set<Group>> groupSuperSet = new HashSet<>();
-            for (Map.Entry<Set<Group>, Map<FlagBitSet, Tristate>> cacheEntry : this.groupSetPermCache.entrySet()) {
+            for (Map.Entry<Set<Group>, FlagCache<Tristate>> cacheEntry : this.groupSetPermCache.entrySet()) {
                 Set<Group> key = cacheEntry.getKey();
                 if (key.contains(group)) groupSuperSet.add(key);
             }
             groupSuperSet.forEach(this.groupSetPermCache::remove);
         }
-
+        this.userCache.clear();
     }
 
     private List<TristateEntry> getGroupPermissions(Group group) {
@@ -1180,6 +1210,7 @@ public class GroupHandler extends HandlerBase {
         private TextColor color;
         private String permission;
         private boolean specialPermission;
+        private int nodeId;
 
         private Group(String name) {
             this(name, "");
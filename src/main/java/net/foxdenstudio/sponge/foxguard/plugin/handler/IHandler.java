@@ -30,13 +30,58 @@ import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
 import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
 import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.util.Tristate;
 
 import javax.annotation.Nullable;
+import java.util.UUID;
 
 public interface IHandler extends IFGObject, Comparable<IHandler> {
 
     EventResult handle(@Nullable User user, FlagBitSet flags, ExtraContext extra);
 
+    /**
+     * Gets only the state this handler would return from {@link #handle(User, FlagBitSet, ExtraContext)}.
+     * This is used on hot paths where the message setting of the result isn't needed.
+     * Handlers that can answer straight from a cache should override this and build their result from it.
+     *
+     * @param user  the user responsible for the event, if any
+     * @param flags the flags of the event
+     * @param extra the context of the event
+     * @return the state of the result, never null
+     */
+    default Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        return handle(user, flags, extra).getState();
+    }
+
+    /**
+     * Called when a player disconnects, so that handlers can drop anything they cached for that user.
+     *
+     * @param user the unique id of the user that disconnected
+     */
+    default void onUserDisconnect(UUID user) {
+    }
+
+    /**
+     * Whether the state this handler returns depends only on the flags of the event.
+     * Controllers use this to memoize whole subtrees per flag set, so handlers that look at the user,
+     * the extra context, or have side effects must leave this false.
+     *
+     * @return true if the result is a pure function of the flags
+     */
+    default boolean isUserIndependent() {
+        return false;
+    }
+
+    /**
+     * Whether the state this handler returns for an event without a user depends only on the flags of the event.
+     * Handler chains made only of such handlers answer passive events from a vector indexed by flag set.
+     *
+     * @return true if the passive result is a pure function of the flags
+     */
+    default boolean isPassiveCacheable() {
+        return isUserIndependent();
+    }
+
     int getPriority();
 
     void setPriority(int priority);
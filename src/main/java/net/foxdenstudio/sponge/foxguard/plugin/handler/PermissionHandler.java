@@ -26,15 +26,17 @@
 package net.foxdenstudio.sponge.foxguard.plugin.handler;
 
 import com.google.common.collect.ImmutableList;
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
 import net.foxdenstudio.sponge.foxcore.common.util.FCCUtil;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
+import net.foxdenstudio.sponge.foxguard.plugin.FGPermissionCache;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.util.PermissionEntry;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.util.UserMemo;
 import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
 import net.foxdenstudio.sponge.foxguard.plugin.object.factory.IHandlerFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
@@ -44,11 +46,13 @@ import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.util.GuavaCollectors;
 import org.spongepowered.api.util.StartsWithPredicate;
+import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
@@ -67,7 +71,8 @@ public class PermissionHandler extends HandlerBase {
 
     private final List<PermissionEntry> entries;
     private String defaultPermission;
-    private final Map<FlagBitSet, List<String>> permCache;
+    private final FlagCache<int[]> permCache;
+    private final UserMemo<FlagCache<Tristate>> userCache = new UserMemo<>(this::loadUserPermCache);
 
     public PermissionHandler(String name, int priority, boolean isEnabled) {
         this(name, priority, isEnabled,
@@ -78,20 +83,23 @@ public class PermissionHandler extends HandlerBase {
         super(name, priority, isEnabled);
         this.entries = entries;
         this.defaultPermission = defaultPermission;
-        this.permCache = new CacheMap<>((k, m) -> {
-            if (k instanceof FlagBitSet) {
-                FlagBitSet flags = (FlagBitSet) k;
-                List<String> perms = new ArrayList<>();
-                final String prefix = "foxguard.handler." + this.name;
-                for (PermissionEntry entry : entries) {
-                    if (flags.toFlagSet().containsAll(entry.set)) {
-                        perms.add(expandPermission(entry.permission));
-                    }
+        this.permCache = new FlagCache<>(flags -> {
+            List<String> permissions = new ArrayList<>();
+            for (PermissionEntry entry : this.entries) {
+                if (entry.matches(flags)) {
+                    permissions.add(expandPermission(entry.permission));
                 }
-                perms.add(expandPermission(defaultPermission));
-                m.put(flags, perms);
-                return perms;
-            } else return null;
+            }
+            permissions.add(expandPermission(this.defaultPermission));
+            FGPermissionCache permissionCache = FGPermissionCache.getInstance();
+            int[] nodes = new int[permissions.size() * 3];
+            for (int i = 0; i < permissions.size(); i++) {
+                String permission = permissions.get(i);
+                nodes[i * 3] = permissionCache.getNodeId(permission + ".allow");
+                nodes[i * 3 + 1] = permissionCache.getNodeId(permission + ".deny");
+                nodes[i * 3 + 2] = permissionCache.getNodeId(permission + ".pass");
+            }
+            return nodes;
         });
     }
 
@@ -112,13 +120,47 @@ public class PermissionHandler extends HandlerBase {
 
     @Override
     public EventResult handle(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
-        if (user == null) return EventResult.pass();
-        for (String permission : this.permCache.get(flags)) {
-            if (user.hasPermission(permission + ".allow")) return EventResult.allow();
-            if (user.hasPermission(permission + ".deny")) return EventResult.deny();
-            if (user.hasPermission(permission + ".pass")) return EventResult.pass();
-        }
-        return EventResult.pass();
+        return EventResult.of(handleState(user, flags, extra));
+    }
+
+    @Override
+    public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        if (user == null) return Tristate.UNDEFINED;
+        return this.userCache.get(user).get(flags);
+    }
+
+    @Override
+    public void onUserDisconnect(UUID user) {
+        this.userCache.invalidate(user);
+    }
+
+    @Override
+    public boolean isPassiveCacheable() {
+        return true;
+    }
+
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        clearCaches();
+    }
+
+    private FlagCache<Tristate> loadUserPermCache(User user, Set<Context> contexts) {
+        FGPermissionCache permissionCache = FGPermissionCache.getInstance();
+        return new FlagCache<>(flags -> {
+            int[] nodes = this.permCache.get(flags);
+            for (int i = 0; i < nodes.length; i += 3) {
+                if (permissionCache.hasPermission(user, contexts, nodes[i])) return Tristate.TRUE;
+                if (permissionCache.hasPermission(user, contexts, nodes[i + 1])) return Tristate.FALSE;
+                if (permissionCache.hasPermission(user, contexts, nodes[i + 2])) return Tristate.UNDEFINED;
+            }
+            return Tristate.UNDEFINED;
+        });
+    }
+
+    private void clearCaches() {
+        this.permCache.clear();
+        this.userCache.clear();
     }
 
     @Override
@@ -339,6 +381,7 @@ public class PermissionHandler extends HandlerBase {
                 if (perm.startsWith("=")) perm = perm.substring(1);
                 if (checkPermissionString(perm)) {
                     defaultPermission = perm;
+                    clearCaches();
                     return ProcessResult.of(true, Text.of(TextColors.GREEN, "Successfully set default permission to ",
                             TextColors.AQUA, "\"",
                             TextColors.RESET, expandPermission(perm),
@@ -349,6 +392,7 @@ public class PermissionHandler extends HandlerBase {
                 }
             } else {
                 defaultPermission = "";
+                clearCaches();
                 return ProcessResult.of(true, "Successfully reset default permission!");
             }
         } else {
@@ -570,7 +614,7 @@ public class PermissionHandler extends HandlerBase {
             if (groupEntry.set.equals(entry.set)) return false;
         }
         this.entries.add(index, entry);
-        this.permCache.clear();
+        clearCaches();
         return true;
     }
 
@@ -582,7 +626,7 @@ public class PermissionHandler extends HandlerBase {
             }
         }
         this.entries.add(entry);
-        this.permCache.clear();
+        clearCaches();
     }
 
     public void setFlagEntry(int index, PermissionEntry entry) {
@@ -595,7 +639,7 @@ public class PermissionHandler extends HandlerBase {
         }
         if (original != null) this.entries.remove(original);
         this.entries.add(index, entry);
-        this.permCache.clear();
+        clearCaches();
     }
 
     public void setFlagEntry(int index, String permission) {
@@ -603,7 +647,7 @@ public class PermissionHandler extends HandlerBase {
             throw new IndexOutOfBoundsException("Index out of bounds: " + index + " Range: 0-" + (this.entries.size() - 1));
         PermissionEntry entry = this.entries.get(index);
         entry.permission = permission;
-        this.permCache.clear();
+        clearCaches();
     }
 
     public boolean removeFlagEntry(Set<Flag> flags) {
@@ -615,7 +659,7 @@ public class PermissionHandler extends HandlerBase {
         }
         if (toRemove == null) return false;
         this.entries.remove(toRemove);
-        this.permCache.clear();
+        clearCaches();
         return true;
     }
 
@@ -623,7 +667,7 @@ public class PermissionHandler extends HandlerBase {
         if (index < 0 || index >= this.entries.size())
             throw new IndexOutOfBoundsException("Index out of bounds: " + index + " Range: 0-" + (this.entries.size() - 1));
         this.entries.remove(index);
-        this.permCache.clear();
+        clearCaches();
     }
 
     public boolean moveFlagEntry(Set<Flag> flags, int destination) {
@@ -637,7 +681,7 @@ public class PermissionHandler extends HandlerBase {
         }
         if (toMove == null) return false;
         this.entries.remove(toMove);
-        this.permCache.clear();
+        clearCaches();
         return true;
     }
 
@@ -648,7 +692,7 @@ public class PermissionHandler extends HandlerBase {
             throw new IndexOutOfBoundsException("Destination index out of bounds: " + destination + " Range: 0-" + (this.entries.size() - 1));
         PermissionEntry entry = this.entries.remove(source);
         this.entries.add(destination, entry);
-        this.permCache.clear();
+        clearCaches();
     }
 
     private boolean checkPermissionString(String perm) {
@@ -26,7 +26,6 @@
 package net.foxdenstudio.sponge.foxguard.plugin.handler;
 
 import com.google.common.collect.ImmutableList;
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
 import net.foxdenstudio.sponge.foxcore.common.util.FCCUtil;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.FlagMapper;
@@ -35,6 +34,7 @@ import net.foxdenstudio.sponge.foxcore.plugin.util.Aliases;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.util.TristateEntry;
 import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
@@ -75,7 +75,7 @@ public class StaticHandler extends HandlerBase {
     };
 
     private final List<TristateEntry> entries;
-    private final Map<FlagBitSet, Tristate> permCache;
+    private final FlagCache<Tristate> permCache;
 
     public StaticHandler(String name, int priority) {
         this(name, priority, true);
@@ -84,19 +84,13 @@ public class StaticHandler extends HandlerBase {
     public StaticHandler(String name, int priority, boolean isEnabled) {
         super(name, priority, isEnabled);
         this.entries = new ArrayList<>();
-        this.permCache = new CacheMap<>((k, m) -> {
-            if (k instanceof FlagBitSet) {
-                FlagBitSet flags = (FlagBitSet) k;
-                Tristate state = Tristate.UNDEFINED;
-                for (TristateEntry entry : StaticHandler.this.entries) {
-                    if (flags.toFlagSet().containsAll(entry.set)) {
-                        state = entry.tristate;
-                        break;
-                    }
+        this.permCache = new FlagCache<>(flags -> {
+            for (TristateEntry entry : StaticHandler.this.entries) {
+                if (entry.matches(flags)) {
+                    return entry.tristate;
                 }
-                m.put(flags, state);
-                return state;
-            } else return null;
+            }
+            return Tristate.UNDEFINED;
         });
     }
 
@@ -125,6 +119,16 @@ public class StaticHandler extends HandlerBase {
         return EventResult.of(this.permCache.get(flags));
     }
 
+    @Override
+    public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        return this.permCache.get(flags);
+    }
+
+    @Override
+    public boolean isUserIndependent() {
+        return true;
+    }
+
     @Override
     public ProcessResult modify(CommandSource source, String arguments) throws CommandException {
         AdvCmdParser.ParseResult parse = AdvCmdParser.builder().arguments(arguments).flagMapper(MAPPER).parse();
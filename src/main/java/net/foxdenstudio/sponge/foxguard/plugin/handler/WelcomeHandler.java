@@ -78,6 +78,11 @@ public class WelcomeHandler extends HandlerBase {
         return EventResult.pass();
     }
 
+    @Override
+    public boolean isPassiveCacheable() {
+        return true;
+    }
+
     @Override
     public String getShortTypeName() {
         return "Wel";
@@ -27,6 +27,7 @@ package net.foxdenstudio.sponge.foxguard.plugin.handler.util;
 
 import com.google.common.collect.ImmutableSet;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
 import org.spongepowered.api.util.Tristate;
 
@@ -40,13 +41,31 @@ import java.util.Set;
  */
 public abstract class Entry {
     public Set<Flag> set;
+    private final FlagBitSet mask;
 
     public Entry(Set<Flag> set) {
         this.set = set;
+        this.mask = FlagBitSet.of(set);
     }
 
     public Entry(Flag... flags) {
         this.set = ImmutableSet.copyOf(flags);
+        this.mask = FlagBitSet.of(flags);
+    }
+
+    /**
+     * Checks whether this entry applies to the given flags,
+     * meaning every flag in this entry is also set in the given flags.
+     *
+     * @param flags the flags of the event being handled
+     * @return whether this entry matches
+     */
+    public boolean matches(FlagBitSet flags) {
+        return flags.containsAll(mask);
+    }
+
+    public FlagBitSet getMask() {
+        return mask;
     }
 
     public String serialize() {
@@ -0,0 +1,96 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.handler.util;
+
+import net.foxdenstudio.sponge.foxguard.plugin.FGConfigManager;
+import net.foxdenstudio.sponge.foxguard.plugin.FGPermissionCache;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.context.Context;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Remembers a value computed from a user's permissions for a short time.
+ * The lifetime is set by the permissionCacheTime config option.
+ * Handlers clear it whenever their own configuration changes, and drop single users when they disconnect.
+ * <p>
+ * A value only holds for the contexts it was computed in, so each lookup resolves the user's active contexts
+ * and hands them to the loader. A user whose contexts changed, for example by changing worlds or walking into
+ * another region, gets a fresh value. Only the latest contexts are kept per user.
+ */
+public final class UserMemo<V> {
+
+    private static final int PURGE_THRESHOLD = 512;
+
+    private final Map<UUID, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final BiFunction<User, Set<Context>, V> loader;
+    private final long ttl;
+
+    public UserMemo(BiFunction<User, Set<Context>, V> loader) {
+        this.loader = loader;
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(FGConfigManager.getInstance().getPermissionCacheTime());
+    }
+
+    public V get(User user) {
+        Set<Context> contexts = FGPermissionCache.getInstance().getContexts(user);
+        if (ttl <= 0) return loader.apply(user, contexts);
+        long now = System.nanoTime();
+        UUID uuid = user.getUniqueId();
+        Entry<V> entry = this.entries.get(uuid);
+        if (entry != null && now - entry.time < ttl && entry.contexts.equals(contexts)) return entry.value;
+        V value = loader.apply(user, contexts);
+        if (this.entries.size() >= PURGE_THRESHOLD) {
+            this.entries.values().removeIf(e -> now - e.time >= ttl);
+        }
+        this.entries.put(uuid, new Entry<>(value, contexts, now));
+        return value;
+    }
+
+    public void invalidate(UUID user) {
+        this.entries.remove(user);
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final Set<Context> contexts;
+        private final long time;
+
+        private Entry(V value, Set<Context> contexts, long time) {
+            this.value = value;
+            this.contexts = contexts;
+            this.time = time;
+        }
+    }
+}
@@ -29,9 +29,10 @@ import com.flowpowered.math.vector.Vector3i;
 import net.foxdenstudio.sponge.foxcore.plugin.command.CommandDebug;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
-import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
-import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.HandlerChainEvaluator;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.data.Transaction;
@@ -41,7 +42,6 @@ import org.spongepowered.api.event.EventListener;
 import org.spongepowered.api.event.block.ChangeBlockEvent;
 import org.spongepowered.api.event.world.ExplosionEvent;
 import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.chat.ChatTypes;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
@@ -51,11 +51,10 @@ import java.util.stream.Collectors;
 
 import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
 import static org.spongepowered.api.util.Tristate.FALSE;
-import static org.spongepowered.api.util.Tristate.UNDEFINED;
 
 public class BlockChangeListener implements EventListener<ChangeBlockEvent> {
 
-    private static final FlagBitSet BASE_FLAG_SET = new FlagBitSet(ROOT, DEBUFF, BLOCK, CHANGE);
+    private static final FlagBitSet BASE_FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, BLOCK, CHANGE);
 
     @Override
     public void handle(ChangeBlockEvent event) throws Exception {
@@ -83,52 +82,33 @@ public class BlockChangeListener implements EventListener<ChangeBlockEvent> {
         else if (event instanceof ChangeBlockEvent.Grow) typeFlag = FlagOld.BLOCK_GROW;
         else return;*/
 
-        FlagBitSet flags = BASE_FLAG_SET.clone();
+        FlagBitSet flags = BASE_FLAG_SET;
 
-        if (event instanceof ChangeBlockEvent.Modify) flags.set(MODIFY);
-        else if (event instanceof ChangeBlockEvent.Break) flags.set(BREAK);
-        else if (event instanceof ChangeBlockEvent.Place) flags.set(PLACE);
-        else if (event instanceof ChangeBlockEvent.Post) flags.set(POST);
-        else if (event instanceof ChangeBlockEvent.Decay) flags.set(DECAY);
-        else if (event instanceof ChangeBlockEvent.Grow) flags.set(GROW);
+        if (event instanceof ChangeBlockEvent.Modify) flags = flags.with(MODIFY);
+        else if (event instanceof ChangeBlockEvent.Break) flags = flags.with(BREAK);
+        else if (event instanceof ChangeBlockEvent.Place) flags = flags.with(PLACE);
+        else if (event instanceof ChangeBlockEvent.Post) flags = flags.with(POST);
+        else if (event instanceof ChangeBlockEvent.Decay) flags = flags.with(DECAY);
+        else if (event instanceof ChangeBlockEvent.Grow) flags = flags.with(GROW);
 
         //FoxGuardMain.instance().getLogger().info(player.getName());
 
-        List<IHandler> handlerList;
-
         List<Transaction<BlockSnapshot>> transactions = event.getTransactions();
-        Set<IHandler> handlerSet = new HashSet<>();
+        HandlerChain chain;
         if (transactions.size() == 1) {
             Location<World> loc = transactions.get(0).getOriginal().getLocation().get();
             Vector3i pos = loc.getBlockPosition();
             World world = loc.getExtent();
 
-            FGManager.getInstance().getRegionsInChunkAtPos(world, pos).stream()
-                    .filter(region -> region.contains(pos, world))
-                    .forEach(region -> region.getHandlers().stream()
-                            .filter(IFGObject::isEnabled)
-                            .forEach(handlerSet::add));
+            chain = FGManager.getInstance().getHandlerChain(world, pos);
         } else {
-            FGManager.getInstance().getRegionsAtMultiLocI(
+            chain = FGManager.getInstance().getHandlerChain(FGManager.getInstance().getRegionsAtMultiLocI(
                     transactions.stream()
                             .map(trans -> trans.getOriginal().getLocation().get())
                             .collect(Collectors.toList())
-            ).forEach(region -> region.getHandlers().stream()
-                    .filter(IFGObject::isEnabled)
-                    .forEach(handlerSet::add));
-        }
-        handlerList = new ArrayList<>(handlerSet);
-        Collections.sort(handlerList);
-        int currPriority = handlerList.get(0).getPriority();
-        Tristate flagState = UNDEFINED;
-        for (IHandler handler : handlerList) {
-            if (handler.getPriority() < currPriority && flagState != UNDEFINED) {
-                break;
-            }
-            //flagState = flagState.and(handler.handle(user, typeFlag, Optional.of(event)).getState());
-            flagState = flagState.and(handler.handle(user, flags, ExtraContext.of(event)).getState());
-            currPriority = handler.getPriority();
+            ));
         }
+        Tristate flagState = HandlerChainEvaluator.evaluate(chain, user, flags, ExtraContext.of(event));
 //        if(flagState == UNDEFINED) flagState = TRUE;
 
         if (flagState == FALSE) {
@@ -150,11 +130,11 @@ public class BlockChangeListener implements EventListener<ChangeBlockEvent> {
                         r = Response.LOCATION;
                     }
                     if (r == Response.BASIC)
-                        player.sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission!"));
+                        DenialNotifier.getInstance().deny(player, DenialNotifier.Denial.GENERIC);
                     else if (r == Response.LOCATION)
-                        player.sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission! " +
-                                event.getTransactions().get(0).getOriginal().getPosition() +
-                                (event.getTransactions().size() > 1 ? "..." : "")));
+                        DenialNotifier.getInstance().deny(player, DenialNotifier.Denial.GENERIC,
+                                event.getTransactions().get(0).getOriginal().getPosition(),
+                                event.getTransactions().size() > 1);
                 }
             }
             event.setCancelled(true);
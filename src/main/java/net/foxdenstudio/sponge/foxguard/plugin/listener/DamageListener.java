@@ -29,9 +29,10 @@ import com.flowpowered.math.vector.Vector3d;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
 import net.foxdenstudio.sponge.foxguard.plugin.FoxGuardMain;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
-import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
-import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.HandlerChainEvaluator;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
 import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.hanging.Hanging;
 import org.spongepowered.api.entity.living.Agent;
@@ -46,13 +47,9 @@ import org.spongepowered.api.event.cause.entity.damage.DamageModifierTypes;
 import org.spongepowered.api.event.cause.entity.damage.source.EntityDamageSource;
 import org.spongepowered.api.event.cause.entity.damage.source.IndirectEntityDamageSource;
 import org.spongepowered.api.event.entity.DamageEntityEvent;
-import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.chat.ChatTypes;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.World;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
@@ -63,9 +60,9 @@ import static org.spongepowered.api.util.Tristate.*;
  */
 public class DamageListener implements EventListener<DamageEntityEvent> {
 
-    private static final FlagBitSet BASE_FLAG_SET_SOURCE = new FlagBitSet(ROOT, DEBUFF, DAMAGE, ENTITY);
-    private static final FlagBitSet INVINCIBLE_FLAG_SET = new FlagBitSet(ROOT, BUFF, INVINCIBLE);
-    private static final FlagBitSet UNDYING_FLAG_SET = new FlagBitSet(ROOT, BUFF, INVINCIBLE, UNDYING);
+    private static final FlagBitSet BASE_FLAG_SET_SOURCE = FlagBitSet.of(ROOT, DEBUFF, DAMAGE, ENTITY);
+    private static final FlagBitSet INVINCIBLE_FLAG_SET = FlagBitSet.of(ROOT, BUFF, INVINCIBLE);
+    private static final FlagBitSet UNDYING_FLAG_SET = FlagBitSet.of(ROOT, BUFF, INVINCIBLE, UNDYING);
 
     @Override
     public void handle(DamageEntityEvent event) throws Exception {
@@ -76,48 +73,33 @@ public class DamageListener implements EventListener<DamageEntityEvent> {
         World world = event.getTargetEntity().getWorld();
         Vector3d pos = event.getTargetEntity().getLocation().getPosition();
         Entity entity = event.getTargetEntity();
-        FlagBitSet flags = BASE_FLAG_SET_SOURCE.clone();
+        FlagBitSet flags = BASE_FLAG_SET_SOURCE;
 
         if (entity instanceof Living) {
-            flags.set(LIVING);
+            flags = flags.with(LIVING);
             if (entity instanceof Agent) {
-                flags.set(MOB);
+                flags = flags.with(MOB);
                 if (entity instanceof Hostile) {
-                    flags.set(HOSTILE);
+                    flags = flags.with(HOSTILE);
                 } else if (entity instanceof Human) {
-                    flags.set(HUMAN);
+                    flags = flags.with(HUMAN);
                 } else {
-                    flags.set(PASSIVE);
+                    flags = flags.with(PASSIVE);
                 }
             } else if (entity instanceof Player) {
-                flags.set(PLAYER);
+                flags = flags.with(PLAYER);
             }
         } else if (entity instanceof Hanging) {
-            flags.set(HANGING);
+            flags = flags.with(HANGING);
         }
 
 
-        List<IHandler> handlerList = new ArrayList<>();
-        FGManager.getInstance().getRegionsInChunkAtPos(world, pos).stream()
-                .filter(region -> region.contains(pos, world))
-                .forEach(region -> region.getHandlers().stream()
-                        .filter(IFGObject::isEnabled)
-                        .filter(handler -> !handlerList.contains(handler))
-                        .forEach(handlerList::add));
-
-        Collections.sort(handlerList);
-        int currPriority;
+        HandlerChain chain = FGManager.getInstance().getHandlerChain(world, pos);
+        ExtraContext extra = ExtraContext.of(event);
         Tristate flagState = UNDEFINED;
         boolean invincible = false;
         if (entity instanceof Player) {
-            currPriority = handlerList.get(0).getPriority();
-            for (IHandler handler : handlerList) {
-                if (handler.getPriority() < currPriority && flagState != UNDEFINED) {
-                    break;
-                }
-                flagState = flagState.and(handler.handle((Player) entity, INVINCIBLE_FLAG_SET, ExtraContext.of(event)).getState());
-                currPriority = handler.getPriority();
-            }
+            flagState = HandlerChainEvaluator.evaluate(chain, (Player) entity, INVINCIBLE_FLAG_SET, extra);
 //            if(flagState == UNDEFINED) flagState = FALSE;
             if (flagState == TRUE) {
                 invincible = true;
@@ -125,36 +107,21 @@ public class DamageListener implements EventListener<DamageEntityEvent> {
             }
         }
         if (!invincible) {
-            currPriority = handlerList.get(0).getPriority();
-            flagState = UNDEFINED;
-            for (IHandler handler : handlerList) {
-                if (handler.getPriority() < currPriority && flagState != UNDEFINED) {
-                    break;
-                }
-                flagState = flagState.and(handler.handle(player, flags, ExtraContext.of(event)).getState());
-                currPriority = handler.getPriority();
-            }
+            flagState = HandlerChainEvaluator.evaluate(chain, player, flags, extra);
 //            if(flagState == UNDEFINED) flagState = TRUE;
         }
         if (flagState == FALSE) {
             if (player != null && player.isOnline() && !invincible) {
-                player.sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission!"));
+                DenialNotifier.getInstance().deny(player, DenialNotifier.Denial.GENERIC);
             }
             event.setCancelled(true);
         } else {
             if (event.willCauseDeath()) {
-                flags.set(KILL);
+                flags = flags.with(KILL);
                 flagState = UNDEFINED;
                 invincible = false;
                 if (entity instanceof Player) {
-                    currPriority = handlerList.get(0).getPriority();
-                    for (IHandler handler : handlerList) {
-                        if (handler.getPriority() < currPriority && flagState != UNDEFINED) {
-                            break;
-                        }
-                        flagState = flagState.and(handler.handle((Player) entity, UNDYING_FLAG_SET, ExtraContext.of(event)).getState());
-                        currPriority = handler.getPriority();
-                    }
+                    flagState = HandlerChainEvaluator.evaluate(chain, (Player) entity, UNDYING_FLAG_SET, extra);
 //                    if(flagState == UNDEFINED) flagState = FALSE;
                     if (flagState == TRUE) {
                         invincible = true;
@@ -162,15 +129,7 @@ public class DamageListener implements EventListener<DamageEntityEvent> {
                     }
                 }
                 if (!invincible) {
-                    currPriority = handlerList.get(0).getPriority();
-                    flagState = UNDEFINED;
-                    for (IHandler handler : handlerList) {
-                        if (handler.getPriority() < currPriority && flagState != UNDEFINED) {
-                            break;
-                        }
-                        flagState = flagState.and(handler.handle(player, flags, ExtraContext.of(event)).getState());
-                        currPriority = handler.getPriority();
-                    }
+                    flagState = HandlerChainEvaluator.evaluate(chain, player, flags, extra);
 //                    if(flagState == UNDEFINED) flagState = TRUE;
                 }
                 if (flagState == FALSE) {
@@ -179,7 +138,7 @@ public class DamageListener implements EventListener<DamageEntityEvent> {
                     builder.cause(FoxGuardMain.getCause());
                     event.setDamage(builder.build(), damage -> ((Living) event.getTargetEntity()).getHealthData().health().get() - damage - 1);
                     if (player != null && player.isOnline() && !invincible)
-                        player.sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission to kill!"));
+                        DenialNotifier.getInstance().deny(player, DenialNotifier.Denial.KILL);
                 }
             }
             //makes sure that handlers are unable to cancel the event directly.
@@ -29,9 +29,10 @@ import com.flowpowered.math.vector.Vector3d;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
 import net.foxdenstudio.sponge.foxguard.plugin.FoxGuardMain;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
-import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
-import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.HandlerChainEvaluator;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
 import org.spongepowered.api.entity.explosive.Explosive;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
@@ -39,8 +40,6 @@ import org.spongepowered.api.event.Cancellable;
 import org.spongepowered.api.event.EventListener;
 import org.spongepowered.api.event.world.ExplosionEvent;
 import org.spongepowered.api.service.user.UserStorageService;
-import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.chat.ChatTypes;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
@@ -52,7 +51,7 @@ import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
 
 public class ExplosionListener implements EventListener<ExplosionEvent> {
 
-    private static final FlagBitSet FLAG_SET = new FlagBitSet(ROOT, DEBUFF, EXPLOSION);
+    private static final FlagBitSet FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, EXPLOSION);
 
 
     @Override
@@ -81,56 +80,39 @@ public class ExplosionListener implements EventListener<ExplosionEvent> {
             } else user = null;
         }
 
-        FlagBitSet flags = FLAG_SET.clone();
+        FlagBitSet flags = FLAG_SET;
 
-        Set<IHandler> handlerSet = new HashSet<>();
+        HandlerChain chain = null;
         if (event instanceof ExplosionEvent.Post) {
-            flags.set(POST);
-            flags.set(BLOCK);
-            flags.set(CHANGE);
+            flags = flags.with(POST);
+            flags = flags.with(BLOCK);
+            flags = flags.with(CHANGE);
 
             ExplosionEvent.Post postEvent = (ExplosionEvent.Post) event;
-            FGManager.getInstance().getRegionsAtMultiLocI(
+            chain = FGManager.getInstance().getHandlerChain(FGManager.getInstance().getRegionsAtMultiLocI(
                     postEvent.getTransactions().stream()
                             .map(trans -> trans.getOriginal().getLocation().get())
                             .collect(Collectors.toList())
-            ).forEach(region -> region.getHandlers().stream()
-                    .filter(IFGObject::isEnabled)
-                    .forEach(handlerSet::add));
+            ));
         } else if (event instanceof ExplosionEvent.Detonate) {
-            flags.set(DETONATE);
+            flags = flags.with(DETONATE);
 
             ExplosionEvent.Detonate detonateEvent = ((ExplosionEvent.Detonate) event);
-            FGManager.getInstance().getRegionsAtMultiLocI(detonateEvent.getAffectedLocations())
-                    .forEach(region -> region.getHandlers().stream()
-                            .filter(IFGObject::isEnabled)
-                            .forEach(handlerSet::add));
+            chain = FGManager.getInstance().getHandlerChain(
+                    FGManager.getInstance().getRegionsAtMultiLocI(detonateEvent.getAffectedLocations())
+            );
         } else if (event instanceof ExplosionEvent.Pre) {
-            flags.set(PRE);
+            flags = flags.with(PRE);
             Location<World> loc = event.getExplosion().getLocation();
             Vector3d pos = loc.getPosition();
             World world = loc.getExtent();
-            FGManager.getInstance().getRegionsInChunkAtPos(world, pos).stream()
-                    .filter(region -> region.contains(pos, world))
-                    .forEach(region -> region.getHandlers().stream()
-                            .filter(IFGObject::isEnabled)
-                            .forEach(handlerSet::add));
-        }
-        List<IHandler> handlerList = new ArrayList<>(handlerSet);
-
-        Collections.sort(handlerList);
-        int currPriority = handlerList.get(0).getPriority();
-        Tristate flagState = Tristate.UNDEFINED;
-        for (IHandler handler : handlerList) {
-            if (handler.getPriority() < currPriority && flagState != Tristate.UNDEFINED) {
-                break;
-            }
-            flagState = flagState.and(handler.handle(user, flags, ExtraContext.of(event)).getState());
-            currPriority = handler.getPriority();
+            chain = FGManager.getInstance().getHandlerChain(world, pos);
         }
+        if (chain == null) return;
+        Tristate flagState = HandlerChainEvaluator.evaluate(chain, user, flags, ExtraContext.of(event));
         if (flagState == Tristate.FALSE) {
             if (user instanceof Player)
-                ((Player) user).sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission!"));
+                DenialNotifier.getInstance().deny((Player) user, DenialNotifier.Denial.GENERIC);
             ((Cancellable) event).setCancelled(true);
         } else {
             //makes sure that handlers are unable to cancel the event directly.
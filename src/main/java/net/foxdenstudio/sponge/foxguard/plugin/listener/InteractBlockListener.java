@@ -28,31 +28,26 @@ package net.foxdenstudio.sponge.foxguard.plugin.listener;
 import com.flowpowered.math.vector.Vector3i;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
-import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
-import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.HandlerChainEvaluator;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.event.EventListener;
 import org.spongepowered.api.event.block.InteractBlockEvent;
-import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.chat.ChatTypes;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.World;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
 import static org.spongepowered.api.util.Tristate.FALSE;
-import static org.spongepowered.api.util.Tristate.UNDEFINED;
 
 public class InteractBlockListener implements EventListener<InteractBlockEvent> {
 
-    private static final FlagBitSet BASE_FLAG_SET = new FlagBitSet(ROOT, DEBUFF, INTERACT, BLOCK);
+    private static final FlagBitSet BASE_FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, INTERACT, BLOCK);
 
     @Override
     public void handle(InteractBlockEvent event) throws Exception {
@@ -66,45 +61,28 @@ public class InteractBlockListener implements EventListener<InteractBlockEvent>
             user = null;
         }
 
-        FlagBitSet flags = BASE_FLAG_SET.clone();
+        FlagBitSet flags = BASE_FLAG_SET;
         BlockSnapshot block = event.getTargetBlock();
         if (block.getState().getType().equals(BlockTypes.AIR)) return;
         World world = block.getLocation().get().getExtent();
         Vector3i pos = block.getPosition();
         if (event instanceof InteractBlockEvent.Primary) {
-            flags.set(PRIMARY);
-            if (event instanceof InteractBlockEvent.Primary.MainHand) flags.set(MAIN);
-            else if (event instanceof InteractBlockEvent.Primary.OffHand) flags.set(OFF);
+            flags = flags.with(PRIMARY);
+            if (event instanceof InteractBlockEvent.Primary.MainHand) flags = flags.with(MAIN);
+            else if (event instanceof InteractBlockEvent.Primary.OffHand) flags = flags.with(OFF);
         } else if (event instanceof InteractBlockEvent.Secondary) {
-            flags.set(SECONDARY);
-            if (event instanceof InteractBlockEvent.Secondary.MainHand) flags.set(MAIN);
-            else if (event instanceof InteractBlockEvent.Secondary.OffHand) flags.set(OFF);
+            flags = flags.with(SECONDARY);
+            if (event instanceof InteractBlockEvent.Secondary.MainHand) flags = flags.with(MAIN);
+            else if (event instanceof InteractBlockEvent.Secondary.OffHand) flags = flags.with(OFF);
         }
 
 
-        List<IHandler> handlerList = new ArrayList<>();
-        FGManager.getInstance().getRegionsInChunkAtPos(world, pos).stream()
-                .filter(region -> region.contains(pos, world))
-                .forEach(region -> region.getHandlers().stream()
-                        .filter(IFGObject::isEnabled)
-                        .filter(handler -> !handlerList.contains(handler))
-                        .forEach(handlerList::add));
-
-        Collections.sort(handlerList);
-        int currPriority = handlerList.get(0).getPriority();
-        Tristate flagState = UNDEFINED;
-        for (IHandler handler : handlerList) {
-            if (handler.getPriority() < currPriority && flagState != UNDEFINED) {
-                break;
-            }
-            //flagState = flagState.and(handler.handle(user, typeFlag, Optional.of(event)).getState());
-            flagState = flagState.and(handler.handle(user, flags, ExtraContext.of(event)).getState());
-            currPriority = handler.getPriority();
-        }
+        HandlerChain chain = FGManager.getInstance().getHandlerChain(world, pos);
+        Tristate flagState = HandlerChainEvaluator.evaluate(chain, user, flags, ExtraContext.of(event));
 //        if (flagState == UNDEFINED) flagState = TRUE;
         if (flagState == FALSE) {
             if (user instanceof Player)
-                ((Player) user).sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission!"));
+                DenialNotifier.getInstance().deny((Player) user, DenialNotifier.Denial.GENERIC);
             event.setCancelled(true);
         } else {
             //makes sure that handlers are unable to cancel the event directly.
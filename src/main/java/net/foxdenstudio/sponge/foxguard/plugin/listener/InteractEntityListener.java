@@ -28,9 +28,10 @@ package net.foxdenstudio.sponge.foxguard.plugin.listener;
 import com.flowpowered.math.vector.Vector3d;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
-import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
-import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.HandlerChainEvaluator;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
 import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.hanging.Hanging;
 import org.spongepowered.api.entity.living.Agent;
@@ -41,22 +42,17 @@ import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.event.EventListener;
 import org.spongepowered.api.event.entity.InteractEntityEvent;
-import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.chat.ChatTypes;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.World;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
 import static org.spongepowered.api.util.Tristate.FALSE;
-import static org.spongepowered.api.util.Tristate.UNDEFINED;
 
 public class InteractEntityListener implements EventListener<InteractEntityEvent> {
 
-    private static final FlagBitSet BASE_FLAG_SET = new FlagBitSet(ROOT, DEBUFF, INTERACT, ENTITY);
+    private static final FlagBitSet BASE_FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, INTERACT, ENTITY);
 
     @Override
     public void handle(InteractEntityEvent event) throws Exception {
@@ -70,61 +66,44 @@ public class InteractEntityListener implements EventListener<InteractEntityEvent
             user = null;
         }
 
-        FlagBitSet flags = BASE_FLAG_SET.clone();
+        FlagBitSet flags = BASE_FLAG_SET;
         World world = event.getTargetEntity().getWorld();
         Vector3d pos = event.getTargetEntity().getLocation().getPosition();
         if (event instanceof InteractEntityEvent.Primary) {
-            flags.set(PRIMARY);
-            if (event instanceof InteractEntityEvent.Primary.MainHand) flags.set(MAIN);
-            else if (event instanceof InteractEntityEvent.Primary.OffHand) flags.set(OFF);
+            flags = flags.with(PRIMARY);
+            if (event instanceof InteractEntityEvent.Primary.MainHand) flags = flags.with(MAIN);
+            else if (event instanceof InteractEntityEvent.Primary.OffHand) flags = flags.with(OFF);
         } else if (event instanceof InteractEntityEvent.Secondary) {
-            flags.set(SECONDARY);
-            if (event instanceof InteractEntityEvent.Secondary.MainHand) flags.set(MAIN);
-            else if (event instanceof InteractEntityEvent.Secondary.OffHand) flags.set(OFF);
+            flags = flags.with(SECONDARY);
+            if (event instanceof InteractEntityEvent.Secondary.MainHand) flags = flags.with(MAIN);
+            else if (event instanceof InteractEntityEvent.Secondary.OffHand) flags = flags.with(OFF);
         }
         Entity entity = event.getTargetEntity();
         if (entity instanceof Living) {
-            flags.set(LIVING);
+            flags = flags.with(LIVING);
             if (entity instanceof Agent) {
-                flags.set(MOB);
+                flags = flags.with(MOB);
                 if (entity instanceof Hostile) {
-                    flags.set(HOSTILE);
+                    flags = flags.with(HOSTILE);
                 } else if (entity instanceof Human) {
-                    flags.set(HUMAN);
+                    flags = flags.with(HUMAN);
                 } else {
-                    flags.set(PASSIVE);
+                    flags = flags.with(PASSIVE);
                 }
             } else if (entity instanceof Player) {
-                flags.set(PLAYER);
+                flags = flags.with(PLAYER);
             }
 
         } else if (entity instanceof Hanging) {
-            flags.set(HANGING);
+            flags = flags.with(HANGING);
         }
 
-        List<IHandler> handlerList = new ArrayList<>();
-        FGManager.getInstance().getRegionsInChunkAtPos(world, pos).stream()
-                .filter(region -> region.contains(pos, world))
-                .forEach(region -> region.getHandlers().stream()
-                        .filter(IFGObject::isEnabled)
-                        .filter(handler -> !handlerList.contains(handler))
-                        .forEach(handlerList::add));
-
-        Collections.sort(handlerList);
-        int currPriority = handlerList.get(0).getPriority();
-        Tristate flagState = UNDEFINED;
-        for (IHandler handler : handlerList) {
-            if (handler.getPriority() < currPriority && flagState != UNDEFINED) {
-                break;
-            }
-            //flagState = flagState.and(handler.handle(user, typeFlag, Optional.of(event)).getState());
-            flagState = flagState.and(handler.handle(user, flags, ExtraContext.of(event)).getState());
-            currPriority = handler.getPriority();
-        }
+        HandlerChain chain = FGManager.getInstance().getHandlerChain(world, pos);
+        Tristate flagState = HandlerChainEvaluator.evaluate(chain, user, flags, ExtraContext.of(event));
 //        if(flagState == UNDEFINED) flagState = TRUE;
         if (flagState == FALSE) {
             if (user instanceof Player)
-                ((Player) user).sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission!"));
+                DenialNotifier.getInstance().deny((Player) user, DenialNotifier.Denial.GENERIC);
             event.setCancelled(true);
         } else {
             //makes sure that handlers are unable to cancel the event directly.
@@ -25,19 +25,26 @@
 
 package net.foxdenstudio.sponge.foxguard.plugin.listener;
 
+import com.flowpowered.math.GenericMath;
 import com.flowpowered.math.vector.Vector3d;
 import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
 import net.foxdenstudio.sponge.foxcore.plugin.command.CommandHUD;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxguard.plugin.FGConfigManager;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
 import net.foxdenstudio.sponge.foxguard.plugin.event.FGUpdateEvent;
+import net.foxdenstudio.sponge.foxguard.plugin.event.FGUpdateObjectEvent;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
 import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
-import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
 import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
 import net.foxdenstudio.sponge.foxguard.plugin.region.IRegion;
+import net.foxdenstudio.sponge.foxguard.plugin.region.world.IWorldRegion;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
 import net.foxdenstudio.sponge.foxguard.plugin.util.FGUtil;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.EventListener;
@@ -50,7 +57,6 @@ import org.spongepowered.api.scoreboard.critieria.Criteria;
 import org.spongepowered.api.scoreboard.displayslot.DisplaySlots;
 import org.spongepowered.api.scoreboard.objective.Objective;
 import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.chat.ChatTypes;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.World;
@@ -65,9 +71,9 @@ import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
  */
 public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
 
-    private static final FlagBitSet ENTER_FLAG_SET = new FlagBitSet(ROOT, DEBUFF, MOVE, ENTER);
-    private static final FlagBitSet EXIT_FLAG_SET = new FlagBitSet(ROOT, DEBUFF, MOVE, EXIT);
-    private static final LastWrapper EMPTY_LAST_WRAPPER = new LastWrapper(null, null);
+    private static final FlagBitSet ENTER_FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, MOVE, ENTER);
+    private static final FlagBitSet EXIT_FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, MOVE, EXIT);
+    private static final LastWrapper EMPTY_LAST_WRAPPER = new LastWrapper(null, null, null, null);
 
     private static PlayerMoveListener instance;
 
@@ -85,12 +91,27 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
         } else return null;
     });
     private final Map<Player, HUDConfig> hudConfigMap = new CacheMap<>((k, m) -> new HUDConfig());
+    private final Map<Player, HandlerChain> pendingHUD = new LinkedHashMap<>();
+    private final int hudInterval;
 
     public PlayerMoveListener(boolean full) {
         this.full = full;
+        this.hudInterval = FGConfigManager.getInstance().getHudUpdateInterval();
         if (instance == null) instance = this;
     }
 
+    /**
+     * Starts flushing queued HUD renders. Without this, renders only happen if the interval is zero or lower.
+     */
+    public void start(Object plugin) {
+        if (hudInterval <= 0) return;
+        Sponge.getScheduler().createTaskBuilder()
+                .name("FoxGuard HUD renderer")
+                .intervalTicks(hudInterval)
+                .execute(this::flushHUD)
+                .submit(plugin);
+    }
+
     @Override
     public void handle(MoveEntityEvent event) throws Exception {
 
@@ -103,55 +124,37 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
                 .filter(entity -> entity instanceof Player)
                 .map(entity -> (Player) entity)
                 .forEach(player -> {
+                    Vector3d to = event.getToTransform().getPosition().add(0, 0.1, 0);
+                    LastWrapper last = this.last.get(player);
+                    if (last.isSafe(world, to)) {
+                        last.position = event.getToTransform().getPosition();
+                        return;
+                    }
+
                     final boolean hud = player.getScoreboard() == scoreboardMap.get(player) && CommandHUD.instance().getIsHUDEnabled().get(player);
-                    final HUDConfig config = this.hudConfigMap.get(player);
-                    final boolean regionHUD = hud && config.regions;
 
-                    List<IHandler> fromList = last.get(player).list, toList = new ArrayList<>();
-                    List<IRegion> regionList = new ArrayList<>();
-                    Vector3d to = event.getToTransform().getPosition().add(0, 0.1, 0);
-                    if (fromList == null) {
-                        fromList = new ArrayList<>();
-                        final List<IHandler> temp = fromList;
+                    HandlerChain fromChain = last.chain;
+                    if (fromChain == null || !fromChain.isValid()) {
                         Vector3d from = event.getFromTransform().getPosition().add(0, 0.1, 0);
-                        FGManager.getInstance().getRegionsInChunkAtPos(world, from).stream()
-                                .filter(region -> region.contains(from, world))
-                                .forEach(region -> region.getHandlers().stream()
-                                        .filter(IFGObject::isEnabled)
-                                        .filter(handler -> !temp.contains(handler))
-                                        .forEach(temp::add));
-                    } else {
-                        fromList = new ArrayList<>(fromList);
+                        fromChain = FGManager.getInstance().getHandlerChain(world, from);
+                    }
+                    HandlerChain toChain = FGManager.getInstance().getHandlerChain(world, to);
+
+                    if (fromChain == toChain) {
+                        this.last.put(player, new LastWrapper(toChain, world, to, event.getToTransform().getPosition()));
+                        return;
                     }
-                    FGManager.getInstance().getRegionsInChunkAtPos(world, to).stream()
-                            .filter(region -> region.contains(to, world))
-                            .forEach(region -> {
-                                if (regionHUD) regionList.add(region);
-                                region.getHandlers().stream()
-                                        .filter(IFGObject::isEnabled)
-                                        .filter(handler -> !toList.contains(handler))
-                                        .forEach(toList::add);
-                            });
-
-                    final List<IHandler> toComplete = new ArrayList<>(toList);
-
-                    final List<IHandler> temp = fromList;
-                    ImmutableList.copyOf(fromList).stream()
-                            .filter(toList::contains)
-                            .forEach(handler -> {
-                                temp.remove(handler);
-                                toList.remove(handler);
-                            });
+
                     List<HandlerWrapper> finalList = new ArrayList<>();
-                    fromList.stream()
-                            .map(handler -> new HandlerWrapper(handler, Type.FROM))
-                            .forEach(finalList::add);
-                    toList.stream()
-                            .map(handler -> new HandlerWrapper(handler, Type.TO))
-                            .forEach(finalList::add);
+                    for (IHandler handler : fromChain.getHandlers()) {
+                        if (!toChain.isLinked(handler)) finalList.add(new HandlerWrapper(handler, Type.FROM));
+                    }
+                    for (IHandler handler : toChain.getHandlers()) {
+                        if (!fromChain.isLinked(handler)) finalList.add(new HandlerWrapper(handler, Type.TO));
+                    }
 
                     if (finalList.size() == 0) {
-                        this.last.put(player, new LastWrapper(toComplete, event.getToTransform().getPosition()));
+                        this.last.put(player, new LastWrapper(toChain, world, to, event.getToTransform().getPosition()));
                         return;
                     }
 
@@ -159,44 +162,75 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
                         Collections.sort(finalList);
                         int currPriority = finalList.get(0).handler.getPriority();
                         Tristate flagState = Tristate.UNDEFINED;
+                        ExtraContext extra = ExtraContext.of(event);
                         for (HandlerWrapper wrap : finalList) {
                             if (wrap.handler.getPriority() < currPriority && flagState != Tristate.UNDEFINED) {
                                 break;
                             }
-                            EventResult result;
+                            Tristate state;
                             if (wrap.type == Type.FROM) {
-                                result = wrap.handler.handle(player, EXIT_FLAG_SET, ExtraContext.of(event));
+                                state = wrap.handler.handleState(player, EXIT_FLAG_SET, extra);
                             } else
-                                result = wrap.handler.handle(player, ENTER_FLAG_SET, ExtraContext.of(event));
-                            flagState = flagState.and(result.getState());
+                                state = wrap.handler.handleState(player, ENTER_FLAG_SET, extra);
+                            flagState = flagState.and(state);
                             currPriority = wrap.handler.getPriority();
                         }
 
                         if (flagState == Tristate.FALSE) {
-                            player.sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission to pass!"));
-                            Vector3d position = this.last.get(player).position;
+                            DenialNotifier.getInstance().deny(player, DenialNotifier.Denial.PASS);
+                            Vector3d position = last.position;
                             if (position == null) position = event.getFromTransform().getPosition();
                             event.setToTransform(event.getToTransform().setPosition(position));
                         } else {
-                            this.last.put(player, new LastWrapper(toComplete, event.getToTransform().getPosition()));
+                            this.last.put(player, new LastWrapper(toChain, world, to, event.getToTransform().getPosition()));
                             //makes sure that handlers are unable to cancel the event directly.
                             event.setCancelled(false);
-                            if (hud) {
-                                renderHUD(player, regionList, toComplete, config);
-                                player.setScoreboard(this.scoreboardMap.get(player));
-                            }
+                            if (hud) queueHUD(player, toChain);
                         }
-                    } else if (hud) {
-                        renderHUD(player, regionList, toComplete, config);
-                        player.setScoreboard(this.scoreboardMap.get(player));
+                    } else {
+                        this.last.put(player, new LastWrapper(toChain, world, to, event.getToTransform().getPosition()));
+                        if (hud) queueHUD(player, toChain);
                     }
                 });
     }
 
+    /**
+     * Renders the HUD for a move. Renders are coalesced and flushed every few ticks,
+     * so a player crossing several boundaries in a row only gets the last one.
+     */
+    private void queueHUD(Player player, HandlerChain chain) {
+        if (hudInterval > 0) {
+            pendingHUD.put(player, chain);
+        } else {
+            renderHUD(player, chain, this.hudConfigMap.get(player));
+            showScoreboard(player);
+        }
+    }
+
+    private void flushHUD() {
+        if (pendingHUD.isEmpty()) return;
+        List<Map.Entry<Player, HandlerChain>> pending = new ArrayList<>(pendingHUD.entrySet());
+        pendingHUD.clear();
+        for (Map.Entry<Player, HandlerChain> entry : pending) {
+            Player player = entry.getKey();
+            if (!player.isOnline() || !CommandHUD.instance().getIsHUDEnabled().get(player)) continue;
+            HandlerChain chain = entry.getValue();
+            if (!chain.isValid()) {
+                chain = FGManager.getInstance().getHandlerChain(player.getWorld(), player.getLocation().getPosition().add(0, 0.1, 0));
+            }
+            renderHUD(player, chain, this.hudConfigMap.get(player));
+            showScoreboard(player);
+        }
+    }
+
+    private void renderHUD(Player player, HandlerChain chain, HUDConfig config) {
+        List<IRegion> regions = config.regions ? new ArrayList<>(chain.getRegions()) : new ArrayList<>();
+        renderHUD(player, regions, new ArrayList<>(chain.getHandlers()), config);
+    }
+
     public void renderHUD(Player player, List<IRegion> regions, List<IHandler> handlers, HUDConfig config) {
-        this.scoreboardMap.remove(player);
-        Scoreboard scoreboard = this.scoreboardMap.get(player);
-        Objective objective = scoreboard.getObjective("foxguardhere").get();
+        Text title = Text.EMPTY;
+        Map<Text, Integer> lines = new LinkedHashMap<>();
         if (config.regions) {
             Collections.sort(regions, (o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
             if (config.handlers) {
@@ -205,60 +239,70 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
                 } else {
                     Collections.sort(handlers, (o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
                 }
-                objective.setDisplayName(Text.of(TextColors.GOLD, "  Regions and Handlers Here  "));
+                title = Text.of(TextColors.GOLD, "  Regions and Handlers Here  ");
                 final int total = regions.size() + handlers.size();
                 final int regionCount = (int) Math.round(13.0 * regions.size() / total);
                 final int handlerCount = (int) Math.round(13.0 * handlers.size() / total);
                 int slot = Math.min(15, total + 2);
-                Score regionsScore = objective.getOrCreateScore(Text.of(TextColors.GREEN, "Regions (" + player.getWorld().getName() + ") ",
-                        TextColors.YELLOW, "(" + regions.size() + ")"));
-                regionsScore.setScore(slot--);
+                lines.put(Text.of(TextColors.GREEN, "Regions (" + player.getWorld().getName() + ") ",
+                        TextColors.YELLOW, "(" + regions.size() + ")"), slot--);
                 for (int i = 0; i < regionCount && i < regions.size(); i++) {
                     IRegion region = regions.get(i);
-                    Score score = objective.getOrCreateScore(Text.of(FGUtil.getColorForObject(region),
-                            "  " + FGUtil.getRegionName(region, false)));
-                    score.setScore(slot--);
+                    lines.put(Text.of(FGUtil.getColorForObject(region),
+                            "  " + FGUtil.getRegionName(region, false)), slot--);
                 }
-                Score handlersScore = objective.getOrCreateScore(Text.of(TextColors.GREEN, "Handlers " + (config.priority ? "by Priority " : ""),
-                        TextColors.YELLOW, "(" + handlers.size() + ")"));
-                handlersScore.setScore(slot--);
+                lines.put(Text.of(TextColors.GREEN, "Handlers " + (config.priority ? "by Priority " : ""),
+                        TextColors.YELLOW, "(" + handlers.size() + ")"), slot--);
                 for (int i = 0; i < handlerCount && i < handlers.size(); i++) {
                     IHandler handler = handlers.get(i);
-                    Score score = objective.getOrCreateScore(Text.of(FGUtil.getColorForObject(handler),
-                            "  " + handler.getShortTypeName() + " : " + handler.getName()));
-                    score.setScore(slot--);
+                    lines.put(Text.of(FGUtil.getColorForObject(handler),
+                            "  " + handler.getShortTypeName() + " : " + handler.getName()), slot--);
                 }
 
             } else {
                 int slot = regions.size();
-                objective.setDisplayName(Text.of(TextColors.GOLD, "  Regions Here (" + player.getWorld().getName() + ")  "));
+                title = Text.of(TextColors.GOLD, "  Regions Here (" + player.getWorld().getName() + ")  ");
                 for (IRegion region : regions) {
-                    Score score = objective.getOrCreateScore(Text.of(FGUtil.getColorForObject(region),
-                            "  " + FGUtil.getRegionName(region, false)));
-                    score.setScore(slot--);
+                    lines.put(Text.of(FGUtil.getColorForObject(region),
+                            "  " + FGUtil.getRegionName(region, false)), slot--);
                     if (slot <= 0) break;
                 }
             }
         } else if (config.handlers) {
             if (config.priority) {
-                objective.setDisplayName(Text.of(TextColors.GOLD, "  Handlers Here by Priority  "));
+                title = Text.of(TextColors.GOLD, "  Handlers Here by Priority  ");
                 for (IHandler handler : handlers) {
-                    Score score = objective.getOrCreateScore(Text.of(FGUtil.getColorForObject(handler),
-                            "  " + handler.getShortTypeName() + " : " + handler.getName()));
-                    score.setScore(handler.getPriority());
+                    lines.put(Text.of(FGUtil.getColorForObject(handler),
+                            "  " + handler.getShortTypeName() + " : " + handler.getName()), handler.getPriority());
                 }
             } else {
                 int slot = handlers.size();
-                objective.setDisplayName(Text.of(TextColors.GOLD, "  Handlers Here  "));
+                title = Text.of(TextColors.GOLD, "  Handlers Here  ");
                 Collections.sort(handlers, (o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
                 for (IHandler handler : handlers) {
-                    Score score = objective.getOrCreateScore(Text.of(FGUtil.getColorForObject(handler),
-                            "  " + handler.getShortTypeName() + " : " + handler.getName()));
-                    score.setScore(slot--);
+                    lines.put(Text.of(FGUtil.getColorForObject(handler),
+                            "  " + handler.getShortTypeName() + " : " + handler.getName()), slot--);
                     if (slot <= 0) break;
                 }
             }
         }
+        applyHUD(player, title, lines);
+    }
+
+    /**
+     * Brings the player's HUD objective in line with the given lines,
+     * only touching scores that were added, removed or moved since the last render.
+     */
+    private void applyHUD(Player player, Text title, Map<Text, Integer> lines) {
+        Objective objective = this.scoreboardMap.get(player).getObjective("foxguardhere").get();
+        if (!objective.getDisplayName().equals(title)) objective.setDisplayName(title);
+        for (Text line : ImmutableList.copyOf(objective.getScores().keySet())) {
+            if (!lines.containsKey(line)) objective.removeScore(line);
+        }
+        lines.forEach((line, value) -> {
+            Score score = objective.getOrCreateScore(line);
+            if (score.getScore() != value) score.setScore(value);
+        });
     }
 
     public Map<Player, HUDConfig> getHudConfigMap() {
@@ -266,7 +310,8 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
     }
 
     public void showScoreboard(Player player) {
-        player.setScoreboard(this.scoreboardMap.get(player));
+        Scoreboard scoreboard = this.scoreboardMap.get(player);
+        if (player.getScoreboard() != scoreboard) player.setScoreboard(scoreboard);
     }
 
     public static PlayerMoveListener getInstance() {
@@ -310,13 +355,65 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
         }
     }
 
+    /**
+     * What a player was last let through to.
+     * If no region only partly covers the chunk section the player is in, every position in that section resolves
+     * to the same chain, so moves that stay inside it can't enter or exit anything and are skipped outright.
+     */
     private static class LastWrapper {
-        public List<IHandler> list;
+        public HandlerChain chain;
         public Vector3d position;
+        private final World world;
+        private final boolean safe;
+        private final int sectionX, sectionY, sectionZ;
 
-        public LastWrapper(List<IHandler> list, Vector3d position) {
-            this.list = list;
+        public LastWrapper(HandlerChain chain, World world, Vector3d checked, Vector3d position) {
+            this.chain = chain;
             this.position = position;
+            this.world = world;
+            if (chain != null && checked != null) {
+                this.sectionX = GenericMath.floor(checked.getX()) >> 4;
+                this.sectionY = GenericMath.floor(checked.getY()) >> 4;
+                this.sectionZ = GenericMath.floor(checked.getZ()) >> 4;
+                this.safe = FGManager.getInstance().getRegionCache()
+                        .getData(world, sectionX, sectionY, sectionZ)
+                        .getPartialRegions(false).isEmpty();
+            } else {
+                this.sectionX = this.sectionY = this.sectionZ = 0;
+                this.safe = false;
+            }
+        }
+
+        /**
+         * Checks whether a change to an object could change what this player was let through to.
+         * Regions matter if they're part of the chain or their bounds now reach the player's section,
+         * and handlers matter if they're linked into the chain.
+         */
+        public boolean isAffectedBy(IFGObject object) {
+            if (chain == null) return false;
+            if (!chain.isValid()) return true;
+            if (object instanceof IHandler) return chain.isLinked((IHandler) object);
+            if (object instanceof IRegion) {
+                IRegion region = (IRegion) object;
+                if (chain.getRegions().contains(region)) return true;
+                if (region instanceof IWorldRegion) {
+                    World regionWorld = ((IWorldRegion) region).getWorld();
+                    if (regionWorld != null && regionWorld != world) return false;
+                }
+                BoundingBox3 bounds = region.getBlockBounds();
+                long minX = (long) sectionX << 4, minY = (long) sectionY << 4, minZ = (long) sectionZ << 4;
+                return bounds.a.getX() <= minX + 15 && bounds.b.getX() >= minX
+                        && bounds.a.getY() <= minY + 15 && bounds.b.getY() >= minY
+                        && bounds.a.getZ() <= minZ + 15 && bounds.b.getZ() >= minZ;
+            }
+            return true;
+        }
+
+        public boolean isSafe(World world, Vector3d checked) {
+            return safe && this.world == world && chain.isValid()
+                    && GenericMath.floor(checked.getX()) >> 4 == sectionX
+                    && GenericMath.floor(checked.getY()) >> 4 == sectionY
+                    && GenericMath.floor(checked.getZ()) >> 4 == sectionZ;
         }
     }
 
@@ -339,7 +436,7 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
     public class Listeners {
         @Listener
         public void onJoin(ClientConnectionEvent.Join event) {
-            last.put(event.getTargetEntity(), new LastWrapper(null, event.getTargetEntity().getTransform().getPosition()));
+            last.put(event.getTargetEntity(), new LastWrapper(null, null, null, event.getTargetEntity().getTransform().getPosition()));
         }
 
         /*@Listener
@@ -349,7 +446,12 @@ public class PlayerMoveListener implements EventListener<MoveEntityEvent> {
 
         @Listener
         public void onChange(FGUpdateEvent event) {
-            last.clear();
+            if (event instanceof FGUpdateObjectEvent) {
+                IFGObject target = ((FGUpdateObjectEvent) event).getTarget();
+                last.values().removeIf(wrapper -> wrapper.isAffectedBy(target));
+            } else {
+                last.clear();
+            }
         }
     }
 }
@@ -57,7 +57,7 @@ import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
  */
 public class PlayerMoveListenerNew implements EventListener<MoveEntityEvent> {
 
-    private static final FlagBitSet BASE_FLAG_SET = new FlagBitSet(ROOT, DEBUFF, MOVE);
+    private static final FlagBitSet BASE_FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, MOVE);
 
     private static PlayerMoveListenerNew instance;
 
@@ -91,7 +91,7 @@ public class PlayerMoveListenerNew implements EventListener<MoveEntityEvent> {
         if (event.isCancelled()) return;
         boolean wasRiding = lastRiding.get(entity);
 
-        FlagBitSet enter = BASE_FLAG_SET.clone();
+        FlagBitSet enter = BASE_FLAG_SET;
 
         if (isRiding && !wasRiding) {
 
@@ -112,8 +112,7 @@ public class PlayerMoveListenerNew implements EventListener<MoveEntityEvent> {
                 fromRegions = manager.getRegionsAtPos(world, from);
                 fromHandlers = fromRegions.stream().flatMap(region -> region.getHandlers().stream()).collect(Collectors.toSet());
 
-                manager.getRegionsInChunkAtPos(world, to).stream()
-                        .filter(region -> region.contains(to, world))
+                manager.getRegionsAtPos(world, to)
                         .forEach(region -> {
                             finalRegions.add(region);
                             if (!fromRegions.remove(region)) toRegions.add(region);
@@ -28,9 +28,11 @@ package net.foxdenstudio.sponge.foxguard.plugin.listener;
 import com.flowpowered.math.vector.Vector3d;
 import net.foxdenstudio.sponge.foxguard.plugin.FGManager;
 import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
-import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
-import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.DenialNotifier;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.HandlerChainEvaluator;
+import net.foxdenstudio.sponge.foxguard.plugin.region.IRegion;
 import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
 import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.hanging.Hanging;
 import org.spongepowered.api.entity.living.Agent;
@@ -41,21 +43,19 @@ import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.event.EventListener;
 import org.spongepowered.api.event.entity.SpawnEntityEvent;
-import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.chat.ChatTypes;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static net.foxdenstudio.sponge.foxguard.plugin.flag.Flags.*;
 
 public class SpawnEntityListener implements EventListener<SpawnEntityEvent> {
 
-    private static final FlagBitSet BASE_FLAG_SET = new FlagBitSet(ROOT, DEBUFF, SPAWN, ENTITY);
+    private static final FlagBitSet BASE_FLAG_SET = FlagBitSet.of(ROOT, DEBUFF, SPAWN, ENTITY);
 
     @Override
     public void handle(SpawnEntityEvent event) throws Exception {
@@ -90,49 +90,42 @@ public class SpawnEntityListener implements EventListener<SpawnEntityEvent> {
             }
 
         }*/
-        FlagBitSet flags = BASE_FLAG_SET.clone();
+        FlagBitSet flags = BASE_FLAG_SET;
         if (oneEntity instanceof Living) {
-            flags.set(LIVING);
+            flags = flags.with(LIVING);
             if (oneEntity instanceof Agent) {
-                flags.set(MOB);
+                flags = flags.with(MOB);
                 if (oneEntity instanceof Hostile) {
-                    flags.set(HOSTILE);
+                    flags = flags.with(HOSTILE);
                 } else if (oneEntity instanceof Human) {
-                    flags.set(HUMAN);
+                    flags = flags.with(HUMAN);
                 } else {
-                    flags.set(PASSIVE);
+                    flags = flags.with(PASSIVE);
                 }
             }
         } else if (oneEntity instanceof Hanging) {
-            flags.set(HANGING);
+            flags = flags.with(HANGING);
         }
 
-        List<IHandler> handlerList = new ArrayList<>();
-
-        for (Entity entity : event.getEntities()) {
-            Location<World> loc = entity.getLocation();
-            Vector3d pos = loc.getPosition();
-            World world = loc.getExtent();
-            FGManager.getInstance().getRegionsInChunkAtPos(world, pos).stream()
-                    .filter(region -> region.contains(pos, world))
-                    .forEach(region -> region.getHandlers().stream()
-                            .filter(IFGObject::isEnabled)
-                            .filter(handler -> !handlerList.contains(handler))
-                            .forEach(handlerList::add));
-        }
-        Collections.sort(handlerList);
-        int currPriority = handlerList.get(0).getPriority();
-        Tristate flagState = Tristate.UNDEFINED;
-        for (IHandler handler : handlerList) {
-            if (handler.getPriority() < currPriority && flagState != Tristate.UNDEFINED) {
-                break;
+        HandlerChain chain;
+        List<Entity> entities = event.getEntities();
+        if (entities.size() == 1) {
+            Location<World> loc = entities.get(0).getLocation();
+            chain = FGManager.getInstance().getHandlerChain(loc.getExtent(), loc.getPosition());
+        } else {
+            Set<IRegion> regions = new HashSet<>();
+            for (Entity entity : entities) {
+                Location<World> loc = entity.getLocation();
+                Vector3d pos = loc.getPosition();
+                World world = loc.getExtent();
+                regions.addAll(FGManager.getInstance().getRegionsAtPos(world, pos));
             }
-            flagState = flagState.and(handler.handle(user, flags, ExtraContext.of(event)).getState());
-            currPriority = handler.getPriority();
+            chain = FGManager.getInstance().getHandlerChain(regions);
         }
+        Tristate flagState = HandlerChainEvaluator.evaluate(chain, user, flags, ExtraContext.of(event));
         if (flagState == Tristate.FALSE) {
             if (user instanceof Player)
-                ((Player) user).sendMessage(ChatTypes.ACTION_BAR, Text.of("You don't have permission!"));
+                DenialNotifier.getInstance().deny((Player) user, DenialNotifier.Denial.GENERIC);
             event.setCancelled(true);
         } else {
             //makes sure that handlers are unable to cancel the event directly.
@@ -0,0 +1,157 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.listener.util;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxguard.plugin.FGConfigManager;
+import net.foxdenstudio.sponge.foxguard.plugin.controller.message.ISendableMessage;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.chat.ChatTypes;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the action bar messages listeners show when something is denied, and sends each player at most one per window.
+ * <p>
+ * A player holding left click on a protected wall would otherwise get a packet for every event.
+ * Instead only the latest denial for each player is kept, and its text is built once when the window closes.
+ * The window is the denialMessageInterval config option, in ticks.
+ * Custom messages from message controllers go through the same queue and take precedence over the generic ones.
+ */
+public final class DenialNotifier {
+
+    private static DenialNotifier instance;
+
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+    private boolean started = false;
+
+    private DenialNotifier() {
+    }
+
+    public static DenialNotifier getInstance() {
+        if (instance == null) instance = new DenialNotifier();
+        return instance;
+    }
+
+    /**
+     * Starts flushing queued messages. Until this is called, or if the window is zero or lower, messages are sent immediately.
+     */
+    public void start(Object plugin) {
+        int window = FGConfigManager.getInstance().getDenialMessageInterval();
+        if (started || window <= 0) return;
+        Sponge.getScheduler().createTaskBuilder()
+                .name("FoxGuard denial notifier")
+                .intervalTicks(window)
+                .execute(this::flush)
+                .submit(plugin);
+        started = true;
+    }
+
+    public void deny(Player player, Denial denial) {
+        deny(player, denial, null, false);
+    }
+
+    /**
+     * Queues a denial message for a player, replacing any that hasn't been sent yet.
+     *
+     * @param player   the player to notify
+     * @param denial   what was denied
+     * @param position where it was denied, if the message should say so
+     * @param more     whether other positions were denied as well
+     */
+    public void deny(Player player, Denial denial, @Nullable Vector3i position, boolean more) {
+        Pending message = new Pending(player, denial, position, more, null);
+        if (started) pending.merge(player.getUniqueId(), message, (old, latest) -> old.message != null ? old : latest);
+        else message.send();
+    }
+
+    /**
+     * Queues a custom message for a player, replacing any that hasn't been sent yet.
+     *
+     * @param player  the player to notify
+     * @param message the message to send
+     */
+    public void send(Player player, ISendableMessage message) {
+        Pending queued = new Pending(player, Denial.GENERIC, null, false, message);
+        if (started) pending.put(player.getUniqueId(), queued);
+        else queued.send();
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) return;
+        Iterator<Pending> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            Pending message = iterator.next();
+            iterator.remove();
+            if (message.player.isOnline()) message.send();
+        }
+    }
+
+    public enum Denial {
+        GENERIC("You don't have permission!"),
+        PASS("You don't have permission to pass!"),
+        KILL("You don't have permission to kill!");
+
+        private final String message;
+        private final Text text;
+
+        Denial(String message) {
+            this.message = message;
+            this.text = Text.of(message);
+        }
+    }
+
+    private static final class Pending {
+        private final Player player;
+        private final Denial denial;
+        private final Vector3i position;
+        private final boolean more;
+        private final ISendableMessage message;
+
+        private Pending(Player player, Denial denial, @Nullable Vector3i position, boolean more, @Nullable ISendableMessage message) {
+            this.player = player;
+            this.denial = denial;
+            this.position = position;
+            this.more = more;
+            this.message = message;
+        }
+
+        private void send() {
+            if (message != null) {
+                message.send(player);
+                return;
+            }
+            Text text = position == null ? denial.text : Text.of(denial.message + " " + position + (more ? "..." : ""));
+            player.sendMessage(ChatTypes.ACTION_BAR, text);
+        }
+    }
+}
@@ -29,9 +29,12 @@ import org.spongepowered.api.util.Tristate;
 
 public final class EventResult {
 
-    private static final EventResult SUCCESS = of(Tristate.TRUE);
-    private static final EventResult PASSTHROUGH = of(Tristate.UNDEFINED);
-    private static final EventResult FAILURE = of(Tristate.FALSE);
+    private static final EventResult SUCCESS = new EventResult(Tristate.TRUE, true);
+    private static final EventResult PASSTHROUGH = new EventResult(Tristate.UNDEFINED, true);
+    private static final EventResult FAILURE = new EventResult(Tristate.FALSE, true);
+    private static final EventResult SUCCESS_QUIET = new EventResult(Tristate.TRUE, false);
+    private static final EventResult PASSTHROUGH_QUIET = new EventResult(Tristate.UNDEFINED, false);
+    private static final EventResult FAILURE_QUIET = new EventResult(Tristate.FALSE, false);
 
     private final Tristate state;
     private final boolean displayDefaultMessage;
@@ -42,11 +45,21 @@ public final class EventResult {
     }
 
     public static EventResult of(Tristate state) {
-        return new EventResult(state, true);
+        return of(state, true);
     }
 
+    /**
+     * Gets the result for a state. Results are interned, so this never allocates.
+     * A null state is treated as {@link Tristate#UNDEFINED}.
+     *
+     * @param success               the state of the result
+     * @param displayDefaultMessage whether the listener should show its default message
+     * @return the shared result instance
+     */
     public static EventResult of(Tristate success, boolean displayDefaultMessage) {
-        return new EventResult(success, displayDefaultMessage);
+        if (success == Tristate.TRUE) return displayDefaultMessage ? SUCCESS : SUCCESS_QUIET;
+        else if (success == Tristate.FALSE) return displayDefaultMessage ? FAILURE : FAILURE_QUIET;
+        else return displayDefaultMessage ? PASSTHROUGH : PASSTHROUGH_QUIET;
     }
 
     public static EventResult allow() {
@@ -0,0 +1,92 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.listener.util;
+
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
+import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import net.foxdenstudio.sponge.foxguard.plugin.util.HandlerChain;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.util.Tristate;
+
+import javax.annotation.Nullable;
+
+import static org.spongepowered.api.util.Tristate.UNDEFINED;
+
+/**
+ * Evaluates handlers for an event.
+ * <p>
+ * Handlers are asked in order of priority. Every handler in a priority tier is asked and the results are combined with
+ * {@link Tristate#and(Tristate)}. Lower tiers are only consulted while the result is still undefined.
+ * <p>
+ * Events without a user are answered from the chain's passive state vector when every handler in it allows that,
+ * so they usually cost a single array read.
+ * <p>
+ * Listeners should go through this class instead of looping over handlers themselves,
+ * so that every event is evaluated the same way.
+ */
+public final class HandlerChainEvaluator {
+
+    private static final ExtraContext PASSIVE_EXTRA = ExtraContext.of();
+
+    private HandlerChainEvaluator() {
+    }
+
+    /**
+     * Evaluates a resolved handler chain. The chain already knows where its priority tiers start,
+     * so no priorities are compared while evaluating.
+     *
+     * @param chain the handler chain at the location of the event
+     * @param user  the user responsible for the event, if any
+     * @param flags the flags of the event
+     * @param extra the context passed to every handler
+     * @return the combined result of the handlers
+     */
+    public static Tristate evaluate(HandlerChain chain, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        if (user == null) {
+            FlagCache<Tristate> passive = chain.getPassiveStates(HandlerChainEvaluator::evaluatePassive);
+            if (passive != null) return passive.get(flags);
+        }
+        return evaluateTiers(chain, user, flags, extra);
+    }
+
+    private static Tristate evaluatePassive(HandlerChain chain, FlagBitSet flags) {
+        return evaluateTiers(chain, null, flags, PASSIVE_EXTRA);
+    }
+
+    private static Tristate evaluateTiers(HandlerChain chain, @Nullable User user, FlagBitSet flags, ExtraContext extra) {
+        Tristate state = UNDEFINED;
+        int tiers = chain.getTierCount();
+        for (int tier = 0; tier < tiers && state == UNDEFINED; tier++) {
+            int end = chain.getTierStart(tier + 1);
+            for (int i = chain.getTierStart(tier); i < end; i++) {
+                state = state.and(chain.get(i).handleState(user, flags, extra));
+            }
+        }
+        return state;
+    }
+}
@@ -80,6 +80,16 @@ public class GlobalRegion extends RegionBase implements IGlobal {
         return true;
     }
 
+    @Override
+    public boolean containsChunk(Vector3i chunk, World world) {
+        return true;
+    }
+
+    @Override
+    public boolean isHeightIndependent() {
+        return true;
+    }
+
     @Override
     public String getShortTypeName() {
         return "SGlobal";
@@ -25,17 +25,58 @@
 
 package net.foxdenstudio.sponge.foxguard.plugin.region;
 
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
 import net.foxdenstudio.sponge.foxcore.plugin.util.IBounded;
 import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
 import net.foxdenstudio.sponge.foxguard.plugin.object.ILinkable;
+import org.spongepowered.api.world.World;
 
 /**
  * Created by Fox on 3/29/2016.
  */
 public interface IRegion extends IFGObject, ILinkable, IBounded {
 
+    BoundingBox3 UNBOUNDED = new BoundingBox3(
+            new Vector3i(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE),
+            new Vector3i(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE));
+
     default boolean saveLinks() {
         return true;
     }
 
+    /**
+     * Gets a box of block positions that encloses every block this region could contain.
+     * The region cache uses this to narrow down which regions need to be tested against a chunk,
+     * so it only has to be conservative. Regions that can't be bounded should return {@link #UNBOUNDED}.
+     *
+     * @return the block bounds of this region
+     */
+    default BoundingBox3 getBlockBounds() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Checks whether this region contains every position inside a 16x16x16 chunk section.
+     * Regions that cover a whole section don't have to be tested position by position,
+     * but returning false is always safe.
+     *
+     * @param chunk the chunk section coordinates
+     * @param world the world the section is in
+     * @return whether every position in the section is inside this region
+     */
+    default boolean containsChunk(Vector3i chunk, World world) {
+        return false;
+    }
+
+    /**
+     * Whether this region gives the same answer at every height.
+     * The region cache stores these per chunk column instead of per section.
+     *
+     * @return true if the Y coordinate never affects containment
+     */
+    default boolean isHeightIndependent() {
+        return false;
+    }
+
 }
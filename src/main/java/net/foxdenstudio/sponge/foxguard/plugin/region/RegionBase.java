@@ -32,9 +32,9 @@ import net.foxdenstudio.sponge.foxguard.plugin.object.FGObjectBase;
 import net.foxdenstudio.sponge.foxguard.plugin.util.FGUtil;
 import net.foxdenstudio.sponge.foxguard.plugin.util.RegionCache;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 public abstract class RegionBase extends FGObjectBase implements IRegion {
 
@@ -42,7 +42,7 @@ public abstract class RegionBase extends FGObjectBase implements IRegion {
 
     protected RegionBase(String name, boolean isEnabled) {
         super(name, isEnabled);
-        this.handlers = new HashSet<>();
+        this.handlers = new CopyOnWriteArraySet<>();
     }
 
     @Override
@@ -58,17 +58,26 @@ public abstract class RegionBase extends FGObjectBase implements IRegion {
 
     @Override
     public boolean addHandler(IHandler handler) {
-        return FGManager.getInstance().isRegistered(handler) && this.handlers.add(handler);
+        if (FGManager.getInstance().isRegistered(handler) && this.handlers.add(handler)) {
+            FGManager.getInstance().markChainsDirty(this);
+            return true;
+        }
+        return false;
     }
 
     @Override
     public boolean removeHandler(IHandler handler) {
-        return this.handlers.remove(handler);
+        if (this.handlers.remove(handler)) {
+            FGManager.getInstance().markChainsDirty(this);
+            return true;
+        }
+        return false;
     }
 
     @Override
     public void clearHandlers() {
         this.handlers.clear();
+        FGManager.getInstance().markChainsDirty(this);
     }
 
     public void markDirty() {
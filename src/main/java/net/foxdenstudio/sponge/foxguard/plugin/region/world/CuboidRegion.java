@@ -60,7 +60,7 @@ import java.util.List;
 
 public class CuboidRegion extends WorldRegionBase implements IIterableRegion, ISelectableRegion<CuboidSelection> {
 
-    private BoundingBox3 boundingBox;
+    private volatile BoundingBox3 boundingBox;
 
 
     public CuboidRegion(String name, boolean isEnabled, BoundingBox3 boundingBox) {
@@ -127,12 +127,27 @@ public class CuboidRegion extends WorldRegionBase implements IIterableRegion, IS
 
     @Override
     public boolean isInChunk(Vector3i chunk) {
-        Vector3i a = chunk.mul(16), b = a.add(16, 16, 16), c = this.boundingBox.a, d = this.boundingBox.b;
+        BoundingBox3 boundingBox = this.boundingBox;
+        Vector3i a = chunk.mul(16), b = a.add(16, 16, 16), c = boundingBox.a, d = boundingBox.b;
         return !(a.getX() > d.getX() || b.getX() < c.getX()
                 || a.getZ() > d.getZ() || b.getZ() < c.getZ()
                 || a.getY() > d.getY() || b.getY() < c.getY());
     }
 
+    @Override
+    public boolean containsChunk(Vector3i chunk) {
+        BoundingBox3 boundingBox = this.boundingBox;
+        Vector3i a = chunk.mul(16), b = a.add(15, 15, 15), c = boundingBox.a, d = boundingBox.b;
+        return a.getX() >= c.getX() && b.getX() <= d.getX()
+                && a.getZ() >= c.getZ() && b.getZ() <= d.getZ()
+                && a.getY() >= c.getY() && b.getY() <= d.getY();
+    }
+
+    @Override
+    public BoundingBox3 getBlockBounds() {
+        return boundingBox;
+    }
+
     @Override
     public String getShortTypeName() {
         return "Cube";
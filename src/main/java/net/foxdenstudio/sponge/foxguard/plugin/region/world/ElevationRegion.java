@@ -30,6 +30,7 @@ import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.common.util.FCCUtil;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import net.foxdenstudio.sponge.foxguard.plugin.object.factory.IWorldRegionFactory;
 import ninja.leaping.configurate.ConfigurationOptions;
@@ -54,8 +55,8 @@ import java.util.List;
 
 public class ElevationRegion extends WorldRegionBase {
 
-    private int upperBound;
-    private int lowerBound;
+    private volatile int upperBound;
+    private volatile int lowerBound;
 
     public ElevationRegion(String name, boolean isEnabled, int lowerBound, int upperBound) {
         super(name, isEnabled);
@@ -111,7 +112,22 @@ public class ElevationRegion extends WorldRegionBase {
     @Override
     public boolean isInChunk(Vector3i chunk) {
         int a = chunk.getY() * 16, b = a + 16;
-        return !(a > this.upperBound || b < this.lowerBound);
+        int lowerBound = this.lowerBound, upperBound = this.upperBound;
+        return !(a > upperBound || b < lowerBound);
+    }
+
+    @Override
+    public boolean containsChunk(Vector3i chunk) {
+        int a = chunk.getY() * 16, b = a + 15;
+        int lowerBound = this.lowerBound, upperBound = this.upperBound;
+        return a >= lowerBound && b <= upperBound;
+    }
+
+    @Override
+    public BoundingBox3 getBlockBounds() {
+        return new BoundingBox3(
+                new Vector3i(Integer.MIN_VALUE, Math.min(lowerBound, upperBound), Integer.MIN_VALUE),
+                new Vector3i(Integer.MAX_VALUE, Math.max(lowerBound, upperBound), Integer.MAX_VALUE));
     }
 
     @Override
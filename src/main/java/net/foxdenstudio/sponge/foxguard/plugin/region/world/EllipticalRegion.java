@@ -30,6 +30,7 @@ import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox2;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.text.Text;
@@ -65,13 +66,13 @@ public class EllipticalRegion extends WorldRegionBase {
 
     @Override
     public boolean contains(int x, int y, int z) {
-        double xo = x + 0.5 - centerX, yo = y + 0.5 - centerY;
+        double xo = x + 0.5 - centerX, yo = z + 0.5 - centerY;
         return (xo * xo / widthSq) + (yo * yo / heightSq) <= 1;
     }
 
     @Override
     public boolean contains(double x, double y, double z) {
-        double xo = x - centerX, yo = y - centerY;
+        double xo = x - centerX, yo = z - centerY;
         return (xo * xo / widthSq) + (yo * yo / heightSq) <= 1;
     }
 
@@ -128,4 +129,25 @@ public class EllipticalRegion extends WorldRegionBase {
         final Vector2i a = chunk.mul(16).toVector2(true), b = a.add(16, 16), c = this.boundingBox.a, d = this.boundingBox.b;
         return !(a.getX() > d.getX() || b.getX() < c.getX() || a.getY() > d.getY() || b.getY() < c.getY());
     }
+
+    /**
+     * An ellipse is convex, so it covers a whole chunk column as soon as it covers all four corners.
+     */
+    @Override
+    public boolean containsChunk(Vector3i chunk) {
+        double x = chunk.getX() * 16, z = chunk.getZ() * 16;
+        return contains(x, 0, z) && contains(x + 16, 0, z) && contains(x, 0, z + 16) && contains(x + 16, 0, z + 16);
+    }
+
+    @Override
+    public boolean isHeightIndependent() {
+        return true;
+    }
+
+    @Override
+    public BoundingBox3 getBlockBounds() {
+        return new BoundingBox3(
+                new Vector3i(boundingBox.a.getX(), Integer.MIN_VALUE, boundingBox.a.getY()),
+                new Vector3i(boundingBox.b.getX(), Integer.MAX_VALUE, boundingBox.b.getY()));
+    }
 }
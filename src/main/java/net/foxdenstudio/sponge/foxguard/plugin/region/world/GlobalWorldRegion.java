@@ -127,6 +127,16 @@ public class GlobalWorldRegion extends WorldRegionBase implements IGlobal {
         return true;
     }
 
+    @Override
+    public boolean containsChunk(Vector3i chunk) {
+        return true;
+    }
+
+    @Override
+    public boolean isHeightIndependent() {
+        return true;
+    }
+
     @Override
     public boolean autoSave() {
         return false;
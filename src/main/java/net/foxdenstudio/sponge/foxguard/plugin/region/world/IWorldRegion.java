@@ -25,6 +25,7 @@
 
 package net.foxdenstudio.sponge.foxguard.plugin.region.world;
 
+import com.flowpowered.math.vector.Vector3i;
 import net.foxdenstudio.sponge.foxcore.plugin.util.IWorldBounded;
 import net.foxdenstudio.sponge.foxguard.plugin.region.IRegion;
 import org.spongepowered.api.world.World;
@@ -35,4 +36,13 @@ public interface IWorldRegion extends IRegion, IWorldBounded {
     World getWorld();
 
     void setWorld(World world);
+
+    @Override
+    default boolean containsChunk(Vector3i chunk, World world) {
+        return getWorld() != null && getWorld().equals(world) && containsChunk(chunk);
+    }
+
+    default boolean containsChunk(Vector3i chunk) {
+        return false;
+    }
 }
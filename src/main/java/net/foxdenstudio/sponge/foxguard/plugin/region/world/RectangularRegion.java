@@ -32,6 +32,7 @@ import net.foxdenstudio.sponge.foxcore.common.util.FCCUtil;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox2;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import net.foxdenstudio.sponge.foxguard.plugin.object.factory.IWorldRegionFactory;
 import net.foxdenstudio.sponge.foxguard.plugin.region.IIterableRegion;
@@ -59,7 +60,7 @@ import java.util.List;
 
 public class RectangularRegion extends WorldRegionBase implements IIterableRegion {
 
-    private BoundingBox2 boundingBox;
+    private volatile BoundingBox2 boundingBox;
 
 
     public RectangularRegion(String name, boolean isEnabled, BoundingBox2 boundingBox) {
@@ -120,10 +121,31 @@ public class RectangularRegion extends WorldRegionBase implements IIterableRegio
 
     @Override
     public boolean isInChunk(Vector3i chunk) {
-        final Vector2i a = chunk.mul(16).toVector2(true), b = a.add(16, 16), c = this.boundingBox.a, d = this.boundingBox.b;
+        final BoundingBox2 boundingBox = this.boundingBox;
+        final Vector2i a = chunk.mul(16).toVector2(true), b = a.add(16, 16), c = boundingBox.a, d = boundingBox.b;
         return !(a.getX() > d.getX() || b.getX() < c.getX() || a.getY() > d.getY() || b.getY() < c.getY());
     }
 
+    @Override
+    public boolean containsChunk(Vector3i chunk) {
+        final BoundingBox2 boundingBox = this.boundingBox;
+        final Vector2i a = chunk.mul(16).toVector2(true), b = a.add(15, 15), c = boundingBox.a, d = boundingBox.b;
+        return a.getX() >= c.getX() && b.getX() <= d.getX() && a.getY() >= c.getY() && b.getY() <= d.getY();
+    }
+
+    @Override
+    public boolean isHeightIndependent() {
+        return true;
+    }
+
+    @Override
+    public BoundingBox3 getBlockBounds() {
+        BoundingBox2 boundingBox = this.boundingBox;
+        return new BoundingBox3(
+                new Vector3i(boundingBox.a.getX(), Integer.MIN_VALUE, boundingBox.a.getY()),
+                new Vector3i(boundingBox.b.getX(), Integer.MAX_VALUE, boundingBox.b.getY()));
+    }
+
     @Override
     public String getShortTypeName() {
         return "Rect";
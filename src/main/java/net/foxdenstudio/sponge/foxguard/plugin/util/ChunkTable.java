@@ -0,0 +1,212 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * An open addressing hash table keyed by packed chunk coordinates.
+ * Lookups go straight to a slot in a primitive array, so nothing is boxed or allocated on a hit.
+ *
+ * @param <V> the type of value stored per chunk
+ */
+public class ChunkTable<V> {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public ChunkTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChunkTable(int capacity) {
+        int length = Integer.highestOneBit(Math.max(capacity, 4) - 1) << 1;
+        this.keys = new long[length];
+        this.values = new Object[length];
+        this.mask = length - 1;
+    }
+
+    /**
+     * Packs chunk coordinates into a single key.
+     * X and Z get 26 bits each, which covers the full world border in chunks, and Y gets the remaining 12.
+     */
+    public static long key(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | (long) (y & 0xFFF);
+    }
+
+    public static int keyX(long key) {
+        return (int) (key >> 38);
+    }
+
+    public static int keyY(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    public static int keyZ(long key) {
+        return (int) (key << 26 >> 38);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = hash(key) & mask;
+        Object value;
+        while ((value = values[index]) != null) {
+            if (keys[index] == key) return (V) value;
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("Value cannot be null!");
+        int index = hash(key) & mask;
+        Object existing;
+        while ((existing = values[index]) != null) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return (V) existing;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > (values.length >> 1) + (values.length >> 2)) resize(values.length << 1);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = hash(key) & mask;
+        Object value;
+        while ((value = values[index]) != null) {
+            if (keys[index] == key) {
+                shiftBack(index);
+                size--;
+                return (V) value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the value stored in a raw slot of the table, or null if the slot is empty.
+     * Together with {@link #capacity()} and {@link #removeAt(int)} this lets callers sweep the table in place.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Removes the entry in a raw slot. Entries further along the probe run may be shifted into the freed slot,
+     * so a sweep should look at the same slot again afterwards.
+     */
+    public void removeAt(int slot) {
+        if (values[slot] == null) return;
+        shiftBack(slot);
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super V> consumer) {
+        for (Object value : values) {
+            if (value != null) consumer.accept((V) value);
+        }
+    }
+
+    /**
+     * Closes the gap left by a removed entry by pulling later entries of the same probe run back into it,
+     * so lookups never need tombstones.
+     */
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            Object value = values[index];
+            if (value == null) break;
+            int home = hash(keys[index]) & mask;
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = value;
+                gap = index;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void resize(int length) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[length];
+        values = new Object[length];
+        mask = length - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = hash(oldKeys[i]) & mask;
+                while (values[index] != null) index = (index + 1) & mask;
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -113,6 +113,15 @@ public final class FGUtil {
         Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), region));
     }
 
+    /**
+     * Posts an update event for each object that changed, so listeners only have to drop state touching those objects.
+     */
+    public static void markObjectsUpdated(Iterable<? extends IFGObject> objects) {
+        for (IFGObject object : objects) {
+            Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), object));
+        }
+    }
+
     public static void markHandlerDirty(IHandler handler) {
         FGStorageManager.getInstance().defaultModifiedMap.put(handler, true);
         Sponge.getGame().getEventManager().post(FGEventFactory.createFGUpdateObjectEvent(FoxGuardMain.getCause(), handler));
@@ -0,0 +1,173 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagCache;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
+import net.foxdenstudio.sponge.foxguard.plugin.region.IRegion;
+import org.spongepowered.api.util.Tristate;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * The handlers for a set of regions, sorted and ready to run.
+ * Chains are interned by {@link RegionCache}, so every position covered by the same regions shares one.
+ * A chain is built once and thrown away when a region or handler in it changes.
+ */
+public final class HandlerChain {
+
+    private final Set<IRegion> regions;
+    private final Set<IHandler> linked;
+    private final IHandler[] handlers;
+    private final int[] tiers;
+    private final List<IHandler> handlerList;
+    private volatile boolean valid = true;
+    private volatile PassiveStates passive;
+
+    private HandlerChain(Set<IRegion> regions) {
+        this.regions = ImmutableSet.copyOf(regions);
+        Set<IHandler> linked = new HashSet<>();
+        for (IRegion region : this.regions) {
+            linked.addAll(region.getHandlers());
+        }
+        this.linked = ImmutableSet.copyOf(linked);
+
+        List<IHandler> enabled = new ArrayList<>(linked.size());
+        for (IHandler handler : linked) {
+            if (handler.isEnabled()) enabled.add(handler);
+        }
+        Collections.sort(enabled);
+        this.handlers = enabled.toArray(new IHandler[enabled.size()]);
+        this.handlerList = ImmutableList.copyOf(this.handlers);
+
+        int[] tiers = new int[this.handlers.length + 1];
+        int count = 0;
+        for (int i = 0; i < this.handlers.length; i++) {
+            if (i == 0 || this.handlers[i].getPriority() != this.handlers[i - 1].getPriority()) tiers[count++] = i;
+        }
+        tiers[count++] = this.handlers.length;
+        this.tiers = Arrays.copyOf(tiers, count);
+    }
+
+    static HandlerChain of(Set<IRegion> regions) {
+        return new HandlerChain(regions);
+    }
+
+    public Set<IRegion> getRegions() {
+        return regions;
+    }
+
+    /**
+     * Gets the enabled handlers, highest priority first.
+     */
+    public List<IHandler> getHandlers() {
+        return handlerList;
+    }
+
+    public int size() {
+        return handlers.length;
+    }
+
+    public IHandler get(int index) {
+        return handlers[index];
+    }
+
+    /**
+     * Gets the number of distinct priorities among the handlers.
+     */
+    public int getTierCount() {
+        return tiers.length - 1;
+    }
+
+    /**
+     * Gets the index of the first handler in a priority tier.
+     * The tier ends where the next one starts, so {@code getTierStart(getTierCount())} is the number of handlers.
+     */
+    public int getTierStart(int tier) {
+        return tiers[tier];
+    }
+
+    /**
+     * Checks whether a handler is linked to any region in this chain, enabled or not.
+     */
+    public boolean isLinked(IHandler handler) {
+        return linked.contains(handler);
+    }
+
+    /**
+     * Gets the states of this chain for events without a user, as a vector indexed by flag set id.
+     * Returns null if any handler in the chain can't be cached that way.
+     * <p>
+     * A change to any handler under a controller in this chain invalidates the chain as well,
+     * so the vector is built once and kept for as long as the chain is.
+     *
+     * @param loader evaluates this chain for a flag set the first time it is seen
+     * @return the passive state vector, or null if the chain isn't passive cacheable
+     */
+    @Nullable
+    public FlagCache<Tristate> getPassiveStates(BiFunction<HandlerChain, FlagBitSet, Tristate> loader) {
+        PassiveStates passive = this.passive;
+        if (passive == null) {
+            boolean cacheable = true;
+            for (IHandler handler : handlers) {
+                if (!handler.isPassiveCacheable()) {
+                    cacheable = false;
+                    break;
+                }
+            }
+            passive = new PassiveStates(cacheable ? new FlagCache<>(flags -> loader.apply(this, flags)) : null);
+            this.passive = passive;
+        }
+        return passive.states;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    void invalidate() {
+        this.valid = false;
+    }
+
+    private static final class PassiveStates {
+        private final FlagCache<Tristate> states;
+
+        private PassiveStates(@Nullable FlagCache<Tristate> states) {
+            this.states = states;
+        }
+    }
+}
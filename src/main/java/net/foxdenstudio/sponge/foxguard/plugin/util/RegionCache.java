@@ -25,151 +25,1447 @@
 
 package net.foxdenstudio.sponge.foxguard.plugin.util;
 
+import com.flowpowered.math.GenericMath;
+import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
-import net.foxdenstudio.sponge.foxguard.plugin.object.IFGObject;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxguard.plugin.FoxGuardMain;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
 import net.foxdenstudio.sponge.foxguard.plugin.region.IRegion;
 import net.foxdenstudio.sponge.foxguard.plugin.region.world.IWorldRegion;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.world.World;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Created by Fox on 3/30/2016.
+ * <p>
+ * The chunk tables are only ever touched by the server thread.
+ * Lookups from any other thread are answered from an immutable snapshot of the regions instead,
+ * which the server thread republishes on the tick after regions change.
+ * Publishing only rebuilds what the changed regions touch, and shares everything else with the previous snapshot.
  */
 
 public class RegionCache {
 
+    /**
+     * Rough per-entry costs used by {@link #getEstimatedMemory()}.
+     * A chunk entry with empty sets comes to about this much once its object headers and backing tables are counted,
+     * and every region it holds adds a hash node.
+     */
+    private static final long CHUNK_DATA_BYTES = 256;
+    private static final long REGION_ENTRY_BYTES = 48;
+    private static final long TABLE_SLOT_BYTES = 12;
+
+    /**
+     * How many distinct region sets to keep chains for before starting over.
+     * Real worlds only ever produce a few hundred, so hitting this means something is churning through sets.
+     * The table is shared with other threads, which stop adding to it once it's full and leave starting over to the server thread.
+     */
+    private static final int MAX_CHAINS = 4096;
+
+    /**
+     * How many chains each chunk remembers by which of its partial regions contain the position.
+     */
+    private static final int CHUNK_CHAINS = 8;
+
+    /**
+     * How many block lookups a chunk takes before its partial regions are compiled into occupancy masks.
+     * Compiling tests every block once per region, so it only pays off for chunks that keep getting asked about.
+     */
+    private static final int HOT_LOOKUPS = 64;
+
     private final Map<World, Set<IWorldRegion>> worldRegions;
     private final Set<IRegion> regions;
 
-    private final Map<World, Map<Vector3i, ChunkData>> chunks;
+    private final RegionIndex regionIndex;
+    private final RegionIndex regionColumnIndex;
+    private WorldData[] worlds = new WorldData[0];
+
+    /**
+     * Stored in place of sections that no height dependent region touches.
+     * Lookups for those sections are answered by the column alone.
+     */
+    private final SectionData emptySection = new SectionData();
+
+    private final Map<Set<IRegion>, HandlerChain> chains = new ConcurrentHashMap<>();
+    private final AtomicInteger chainRevision = new AtomicInteger();
+
+    private volatile Thread owner;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private final Map<World, SnapshotStore> snapshotStores = new ConcurrentHashMap<>();
+    private final Map<IRegion, RegionState> published = new HashMap<>();
+    private final Set<IRegion> unpublished = new HashSet<>();
+    private boolean publishScheduled = false;
+    private boolean snapshotCurrent = true;
+
+    private final int maxEntries;
+    private int resident = 0;
+    private int handWorld = 0;
+    private int handSlot = 0;
+    private boolean handColumns = false;
 
     public RegionCache(Set<IRegion> regions, Map<World, Set<IWorldRegion>> worldRegions) {
+        this(regions, worldRegions, 0);
+    }
+
+    /**
+     * @param maxEntries the most chunk sections and columns to keep across all worlds before evicting, or zero or lower for no limit
+     */
+    public RegionCache(Set<IRegion> regions, Map<World, Set<IWorldRegion>> worldRegions, int maxEntries) {
         this.worldRegions = worldRegions;
         this.regions = regions;
-        chunks = new CacheMap<>((world, worldDataMap) -> {
-            if (world instanceof World) {
-                Map<Vector3i, ChunkData> worldData = new CacheMap<>((chunk, chunkDataMap) -> {
-                    if (chunk instanceof Vector3i) {
-                        ChunkData data = new ChunkData((World) world, (Vector3i) chunk);
-                        chunkDataMap.put((Vector3i) chunk, data);
-                        return data;
-                    } else return null;
-                });
-                worldDataMap.put((World) world, worldData);
-                return worldData;
-            } else return null;
+        this.maxEntries = maxEntries;
+        this.regionIndex = new RegionIndex();
+        this.regionColumnIndex = new RegionIndex();
+        regions.forEach(region -> getSuperIndex(region).insert(region));
+        resetSnapshot();
+    }
+
+    /**
+     * Binds the cache to the server thread. Until this is called every thread is treated as the server thread.
+     */
+    public void setOwner(Thread thread) {
+        this.owner = thread;
+        this.publishScheduled = false;
+        resetSnapshot();
+    }
+
+    private boolean isOwner() {
+        Thread owner = this.owner;
+        return owner == null || owner == Thread.currentThread();
+    }
+
+    /**
+     * Schedules a new snapshot for the next tick, so a burst of changes like loading regions only builds one.
+     */
+    private void snapshotChanged() {
+        snapshotCurrent = false;
+        if (publishScheduled || owner == null) return;
+        publishScheduled = true;
+        Sponge.getScheduler().createTaskBuilder()
+                .execute(() -> {
+                    publishScheduled = false;
+                    publish();
+                })
+                .submit(FoxGuardMain.instance());
+    }
+
+    /**
+     * Throws away the published snapshot along with every entry built from it, and publishes every region again.
+     */
+    private void resetSnapshot() {
+        this.snapshot = Snapshot.EMPTY;
+        this.snapshotStores.clear();
+        this.published.clear();
+        this.unpublished.addAll(regions);
+        worldRegions.values().forEach(this.unpublished::addAll);
+        publish();
+    }
+
+    /**
+     * Publishes a snapshot with the regions that changed since the last one.
+     * Only the layer cells and snapshot entries those regions touch, before and after the change, are rebuilt.
+     */
+    private void publish() {
+        Snapshot old = this.snapshot;
+        Layer.Editor superLayer = old.superLayer.edit();
+        Map<World, Layer.Editor> worldLayers = new HashMap<>();
+        old.worldLayers.forEach((world, layer) -> {
+            if (worldRegions.containsKey(world)) worldLayers.put(world, layer.edit());
         });
+        published.values().removeIf(state -> state.world != null && !worldRegions.containsKey(state.world));
+
+        List<RegionState> changed = new ArrayList<>();
+        for (IRegion region : unpublished) {
+            RegionState before = published.remove(region);
+            if (before != null) {
+                Layer.Editor layer = before.world == null ? superLayer : worldLayers.get(before.world);
+                if (layer != null) layer.remove(before);
+                changed.add(before);
+            }
+            RegionState after = capture(region);
+            if (after != null) {
+                published.put(region, after);
+                if (after.world == null) superLayer.add(after);
+                else worldLayers.computeIfAbsent(after.world, world -> Layer.EMPTY.edit()).add(after);
+                changed.add(after);
+            }
+        }
+        unpublished.clear();
+
+        ImmutableMap.Builder<World, Layer> layers = ImmutableMap.builder();
+        worldLayers.forEach((world, layer) -> layers.put(world, layer.build()));
+        this.snapshot = new Snapshot(superLayer.build(), layers.build());
+        this.snapshotCurrent = true;
+
+        // Stale entries are only dropped once the new snapshot is visible.
+        // A reader that built an entry from the old one either has it dropped here, or sees the swap and drops it itself.
+        snapshotStores.keySet().removeIf(world -> !worldRegions.containsKey(world));
+        for (RegionState state : changed) {
+            if (state.world == null) {
+                snapshotStores.values().forEach(store -> store.invalidate(state));
+            } else {
+                SnapshotStore store = snapshotStores.get(state.world);
+                if (store != null) store.invalidate(state);
+            }
+        }
+    }
+
+    /**
+     * Captures a region as it stands now, or returns null if it isn't registered anymore.
+     */
+    private RegionState capture(IRegion region) {
+        World world = null;
+        if (region instanceof IWorldRegion) {
+            world = ((IWorldRegion) region).getWorld();
+            Set<IWorldRegion> set = world == null ? null : worldRegions.get(world);
+            if (set == null || !set.contains(region)) return null;
+        } else if (!regions.contains(region)) {
+            return null;
+        }
+        return new RegionState(region, world);
+    }
+
+    /**
+     * Checks whether the published snapshot reflects every change made so far.
+     * Only meaningful on the server thread.
+     */
+    public boolean isSnapshotCurrent() {
+        return snapshotCurrent;
+    }
+
+    /**
+     * Builds snapshot entries for a box of chunk sections ahead of time, so the server thread can pick them up
+     * instead of querying the indexes when something first happens there. Safe to call from any thread.
+     * Entries built against a snapshot that has since been replaced are simply dropped with it.
+     */
+    public void prewarm(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    getSnapshotData(world, x, y, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the snapshot entry for a chunk section, building and storing it if it isn't there yet.
+     * An entry built from a snapshot that was replaced in the meantime is handed out once but not kept.
+     */
+    private SnapshotData getSnapshotData(World world, int x, int y, int z) {
+        Snapshot snapshot = this.snapshot;
+        SnapshotStore store = snapshotStores.get(world);
+        if (store == null) {
+            if (!snapshot.worldLayers.containsKey(world)) return new SnapshotData(snapshot, world, x, y, z);
+            store = snapshotStores.computeIfAbsent(world, key -> new SnapshotStore(maxEntries));
+        }
+        long key = ChunkTable.key(x, y, z);
+        SnapshotData data = store.get(key);
+        if (data == null) {
+            data = new SnapshotData(snapshot, world, x, y, z);
+            store.put(key, data);
+            if (this.snapshot != snapshot) store.remove(key, data);
+        }
+        return data;
+    }
+
+    private SnapshotData peekSnapshotData(World world, int x, int y, int z) {
+        SnapshotStore store = snapshotStores.get(world);
+        return store == null ? null : store.peek(ChunkTable.key(x, y, z));
     }
 
     public void markDirty(IRegion region, DirtyType type) {
+        unpublished.add(region);
+        snapshotChanged();
+        if (type == DirtyType.REMOVED) invalidateChains(region);
         if (region instanceof IWorldRegion) {
-            for (ChunkData data : chunks.get(((IWorldRegion) region).getWorld()).values()) {
-                data.markDirty(region, type);
+            World world = ((IWorldRegion) region).getWorld();
+            if (world != null) {
+                WorldData worldData = getWorldData(world);
+                int[] bounds = updateIndex(worldData.getIndex(region), region, type);
+                if (bounds != null) markDirty(worldData, region, type, bounds);
+            } else if (type == DirtyType.REMOVED) {
+                for (WorldData worldData : worlds) {
+                    int[] bounds = updateIndex(worldData.getIndex(region), region, type);
+                    if (bounds != null) markDirty(worldData, region, type, bounds);
+                }
             }
         } else {
-            for (Map<Vector3i, ChunkData> worldData : chunks.values()) {
-                for (ChunkData data : worldData.values()) {
-                    data.markDirty(region, type);
+            int[] bounds = updateIndex(getSuperIndex(region), region, type);
+            if (bounds != null) {
+                for (WorldData worldData : worlds) {
+                    markDirty(worldData, region, type, bounds);
                 }
             }
         }
     }
 
+    /**
+     * Marks only the cached entries that fall inside the given chunk bounds.
+     * Height independent regions only ever live in the column table.
+     * Placeholders for empty sections are dropped so they get rebuilt if the change could have put a region in them.
+     */
+    private void markDirty(WorldData worldData, IRegion region, DirtyType type, int[] bounds) {
+        if (region.isHeightIndependent()) {
+            forEachInBounds(worldData.columns, worldData, bounds, true, (data, key) -> data.regions.markDirty(region, type));
+        } else {
+            List<Long> stale = new ArrayList<>();
+            forEachInBounds(worldData.sections, worldData, bounds, false, (data, key) -> {
+                if (data != emptySection) data.regions.markDirty(region, type);
+                else if (type != DirtyType.REMOVED) stale.add(key);
+            });
+            for (long key : stale) {
+                worldData.sections.remove(key);
+                resident--;
+            }
+        }
+    }
+
+    /**
+     * Visits the entries of a table that fall inside the given chunk bounds.
+     * If the bounds cover fewer chunks than are cached, each one is looked up directly.
+     * Otherwise the table is swept once and each key is tested against the bounds,
+     * which is what ends up happening for unbounded regions.
+     */
+    private <T> void forEachInBounds(ChunkTable<T> table, WorldData worldData, int[] bounds, boolean columns, ObjLongConsumer<T> action) {
+        if (table.isEmpty()) return;
+        int minX = Math.max(bounds[0], worldData.minX), maxX = Math.min(bounds[3], worldData.maxX);
+        int minY = Math.max(bounds[1], worldData.minY), maxY = Math.min(bounds[4], worldData.maxY);
+        int minZ = Math.max(bounds[2], worldData.minZ), maxZ = Math.min(bounds[5], worldData.maxZ);
+        if (columns) minY = maxY = 0;
+        if (minX > maxX || minY > maxY || minZ > maxZ) return;
+
+        int size = table.size();
+        long volume = (long) maxX - minX + 1;
+        if (volume <= size) volume *= (long) maxY - minY + 1;
+        if (volume <= size) volume *= (long) maxZ - minZ + 1;
+
+        if (volume <= size) {
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        long key = ChunkTable.key(x, y, z);
+                        T data = table.get(key);
+                        if (data != null) action.accept(data, key);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < table.capacity(); i++) {
+                T data = table.valueAt(i);
+                if (data == null) continue;
+                long key = table.keyAt(i);
+                int x = ChunkTable.keyX(key), y = ChunkTable.keyY(key), z = ChunkTable.keyZ(key);
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                    action.accept(data, key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the index for a change to a region.
+     *
+     * @return the union of the region's chunk bounds before and after the change,
+     * or null if the region was never indexed and so can't be in any cached chunk
+     */
+    private int[] updateIndex(RegionIndex index, IRegion region, DirtyType type) {
+        int[] oldBounds = index.getChunkBounds(region);
+        switch (type) {
+            case ADDED:
+                index.insert(region);
+                break;
+            case MODIFIED:
+                if (oldBounds != null) index.insert(region);
+                break;
+            case REMOVED:
+                index.remove(region);
+                break;
+        }
+        int[] newBounds = index.getChunkBounds(region);
+        if (oldBounds == null) return newBounds;
+        if (newBounds == null) return oldBounds;
+        for (int i = 0; i < 3; i++) {
+            oldBounds[i] = Math.min(oldBounds[i], newBounds[i]);
+            oldBounds[i + 3] = Math.max(oldBounds[i + 3], newBounds[i + 3]);
+        }
+        return oldBounds;
+    }
+
+    private RegionIndex getSuperIndex(IRegion region) {
+        return region.isHeightIndependent() ? regionColumnIndex : regionIndex;
+    }
+
+    /**
+     * Gets the chain for an exact set of regions, building it if this set hasn't been seen yet.
+     * Every thread shares the same chains, so lookups from other threads keep their sorted handlers and passive states too.
+     */
+    public HandlerChain getChain(Set<IRegion> regions) {
+        HandlerChain chain = chains.get(regions);
+        if (chain != null && chain.isValid()) return chain;
+        if (isOwner()) {
+            if (chains.size() >= MAX_CHAINS) invalidateChains();
+            chain = HandlerChain.of(regions);
+            chains.put(chain.getRegions(), chain);
+            return chain;
+        }
+        int revision = chainRevision.get();
+        HandlerChain built = HandlerChain.of(regions);
+        if (chains.size() >= MAX_CHAINS) return built;
+        chain = chains.merge(built.getRegions(), built, (existing, latest) -> existing.isValid() ? existing : latest);
+        // The chain may have been built from links the server thread invalidated while this thread was building it.
+        if (chain == built && chainRevision.get() != revision) chains.remove(built.getRegions(), built);
+        return chain;
+    }
+
+    /**
+     * Drops every chain that includes a region, so its handlers are collected again next time.
+     */
+    public void invalidateChains(IRegion region) {
+        chainRevision.incrementAndGet();
+        chains.values().removeIf(chain -> {
+            if (!chain.getRegions().contains(region)) return false;
+            chain.invalidate();
+            return true;
+        });
+    }
+
+    /**
+     * Drops every chain that a handler is linked into, whether or not it was enabled.
+     */
+    public void invalidateChains(IHandler handler) {
+        chainRevision.incrementAndGet();
+        chains.values().removeIf(chain -> {
+            if (!chain.isLinked(handler)) return false;
+            chain.invalidate();
+            return true;
+        });
+    }
+
+    /**
+     * Drops every chain that any of the given handlers is linked into.
+     */
+    public void invalidateChains(Set<IHandler> handlers) {
+        chainRevision.incrementAndGet();
+        chains.values().removeIf(chain -> {
+            for (IHandler handler : handlers) {
+                if (chain.isLinked(handler)) {
+                    chain.invalidate();
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    public void invalidateChains() {
+        chainRevision.incrementAndGet();
+        chains.values().forEach(HandlerChain::invalidate);
+        chains.clear();
+    }
+
     public void clearCaches() {
-        this.chunks.values().forEach(Map::clear);
+        invalidateChains();
+        this.worlds = new WorldData[0];
+        this.resident = 0;
+        this.regionIndex.clear();
+        this.regionColumnIndex.clear();
+        this.regions.forEach(region -> getSuperIndex(region).insert(region));
+        resetSnapshot();
+    }
+
+    public void unloadWorld(World world) {
+        WorldData[] worlds = this.worlds;
+        for (int i = 0; i < worlds.length; i++) {
+            if (worlds[i].world == world) {
+                WorldData[] copy = new WorldData[worlds.length - 1];
+                System.arraycopy(worlds, 0, copy, 0, i);
+                System.arraycopy(worlds, i + 1, copy, i, worlds.length - i - 1);
+                this.worlds = copy;
+                this.resident -= worlds[i].sections.size() + worlds[i].columns.size();
+                snapshotChanged();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops every cached entry in a chunk column. Called when the server unloads the chunk,
+     * since nothing is likely to ask about it again until it comes back.
+     */
+    public void unloadChunk(World world, int x, int z) {
+        WorldData worldData = findWorldData(world);
+        if (worldData == null) return;
+        if (worldData.columns.remove(ChunkTable.key(x, 0, z)) != null) resident--;
+        if (worldData.sections.isEmpty()) return;
+        for (int y = worldData.minY; y <= worldData.maxY; y++) {
+            if (worldData.sections.remove(ChunkTable.key(x, y, z)) != null) resident--;
+        }
+    }
+
+    /**
+     * Gets the number of cached sections and columns, which is what the limit is enforced on.
+     */
+    public int getResidentCount() {
+        return resident;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Gives a rough estimate, in bytes, of the memory held by the cached chunk entries.
+     * It is only meant as a guide for tuning the cache size.
+     */
+    public long getEstimatedMemory() {
+        long total = 0;
+        for (WorldData worldData : this.worlds) {
+            total += estimateMemory(worldData.sections);
+            total += estimateMemory(worldData.columns);
+        }
+        return total;
+    }
+
+    private long estimateMemory(ChunkTable<? extends CachedData> table) {
+        long total = table.capacity() * TABLE_SLOT_BYTES;
+        for (int i = 0; i < table.capacity(); i++) {
+            CachedData data = table.valueAt(i);
+            if (data != null && data != emptySection) total += data.estimateSize();
+        }
+        return total;
     }
 
     public ChunkData getData(World world, Vector3i chunk) {
-        return this.chunks.get(world).get(chunk);
+        return getData(world, chunk.getX(), chunk.getY(), chunk.getZ());
     }
 
-    public class ChunkData {
+    /**
+     * Gets the regions cached for a chunk section.
+     * Height independent regions are shared by the whole column,
+     * so if no other region touches the section the column's entry is returned directly.
+     * Off the server thread this is served from the latest snapshot, which can be a tick behind.
+     */
+    public ChunkData getData(World world, int x, int y, int z) {
+        if (!isOwner()) return getSnapshotData(world, x, y, z);
+        WorldData worldData = getWorldData(world);
+        long columnKey = ChunkTable.key(x, 0, z);
+        ColumnData column = worldData.columns.get(columnKey);
+        long key = ChunkTable.key(x, y, z);
+        SectionData data = worldData.sections.get(key);
+        SnapshotData warm = (column == null || data == null) && snapshotCurrent ? peekSnapshotData(world, x, y, z) : null;
+        if (column == null) {
+            column = warm != null ? new ColumnData(worldData, x, z, warm) : new ColumnData(worldData, x, z);
+            worldData.columns.put(columnKey, column);
+            worldData.include(x, 0, z);
+            resident++;
+        } else {
+            column.referenced = true;
+        }
+        if (data == null) {
+            data = warm != null
+                    ? new SectionData(worldData, column, new Vector3i(x, y, z), warm)
+                    : new SectionData(worldData, column, new Vector3i(x, y, z));
+            if (data.regions.isEmpty()) data = emptySection;
+            else column.sections++;
+            worldData.sections.put(key, data);
+            worldData.include(x, y, z);
+            resident++;
+        } else if (data != emptySection) {
+            data.referenced = true;
+        }
+        if (resident > maxEntries && maxEntries > 0) evict();
+        return data == emptySection ? column : data;
+    }
+
+    /**
+     * Evicts entries with the clock algorithm until the cache is back under its limit.
+     * The hand sweeps each world's sections and then its columns, giving recently used entries a second chance.
+     * A column is only evicted once none of its sections are cached, since those still point at it.
+     */
+    private void evict() {
+        while (resident > maxEntries && worlds.length > 0) {
+            if (handWorld >= worlds.length) {
+                handWorld = 0;
+                handSlot = 0;
+                handColumns = false;
+            }
+            WorldData worldData = worlds[handWorld];
+            if (handSlot >= (handColumns ? worldData.columns : worldData.sections).capacity()) {
+                if (handColumns) handWorld++;
+                handColumns = !handColumns;
+                handSlot = 0;
+                continue;
+            }
+            if (handColumns) {
+                ColumnData column = worldData.columns.valueAt(handSlot);
+                if (column == null || column.sections > 0) {
+                    handSlot++;
+                } else if (column.referenced) {
+                    column.referenced = false;
+                    handSlot++;
+                } else {
+                    worldData.columns.removeAt(handSlot);
+                    resident--;
+                }
+            } else {
+                SectionData data = worldData.sections.valueAt(handSlot);
+                if (data == null) {
+                    handSlot++;
+                } else if (data != emptySection && data.referenced) {
+                    data.referenced = false;
+                    handSlot++;
+                } else {
+                    worldData.sections.removeAt(handSlot);
+                    if (data != emptySection) data.column.sections--;
+                    resident--;
+                }
+            }
+        }
+    }
+
+    private WorldData findWorldData(World world) {
+        for (WorldData worldData : this.worlds) {
+            if (worldData.world == world) return worldData;
+        }
+        return null;
+    }
+
+    /**
+     * There are only ever a handful of worlds loaded, so a linear scan by identity beats hashing the world.
+     */
+    private WorldData getWorldData(World world) {
+        WorldData worldData = findWorldData(world);
+        if (worldData != null) return worldData;
+        worldData = new WorldData(world);
+        WorldData[] copy = Arrays.copyOf(this.worlds, this.worlds.length + 1);
+        copy[copy.length - 1] = worldData;
+        this.worlds = copy;
+        return worldData;
+    }
+
+    private class WorldData {
+
+        private final World world;
+        private final RegionIndex index;
+        private final RegionIndex columnIndex;
+        private final ChunkTable<SectionData> sections;
+        private final ChunkTable<ColumnData> columns;
+        private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        private WorldData(World world) {
+            this.world = world;
+            this.index = new RegionIndex();
+            this.columnIndex = new RegionIndex();
+            this.sections = new ChunkTable<>();
+            this.columns = new ChunkTable<>();
+            worldRegions.getOrDefault(world, Collections.emptySet()).forEach(region -> getIndex(region).insert(region));
+        }
+
+        private RegionIndex getIndex(IRegion region) {
+            return region.isHeightIndependent() ? columnIndex : index;
+        }
+
+        /**
+         * Grows the range of chunk coordinates this world has ever cached.
+         * It never shrinks, so it's only good as an outer limit.
+         */
+        private void include(int x, int y, int z) {
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+            if (z < minZ) minZ = z;
+            if (z > maxZ) maxZ = z;
+        }
+    }
+
+    /**
+     * The regions in a chunk section.
+     */
+    public interface ChunkData {
+
+        Set<IRegion> getRegions(boolean includeDisabled);
+
+        /**
+         * Gets the regions that contain every position in this chunk.
+         * These don't need to be checked against individual positions.
+         */
+        Set<IRegion> getFullRegions(boolean includeDisabled);
+
+        /**
+         * Gets the regions that only cover part of this chunk.
+         * These still have to be checked against each position.
+         */
+        Set<IRegion> getPartialRegions(boolean includeDisabled);
+
+        /**
+         * Gets the handler chain for the enabled regions at a position in this chunk.
+         */
+        HandlerChain getChain(Vector3i position);
+
+        HandlerChain getChain(Vector3d position);
+    }
+
+    /**
+     * The regions cached for a chunk section on the server thread.
+     * Views are built once and kept until a pending change is applied.
+     */
+    private abstract class CachedData implements ChunkData {
+
+        @SuppressWarnings("unchecked")
+        private final Set<IRegion>[] views = new Set[6];
+        private long viewStamp = -1;
+
+        private IRegion[] partial;
+        private final long[] chainMasks = new long[CHUNK_CHAINS];
+        private final HandlerChain[] chainCache = new HandlerChain[CHUNK_CHAINS];
+        private int chainCount = 0;
+
+        private long[][] masks;
+        private int lookups = 0;
+
+        @Override
+        public Set<IRegion> getRegions(boolean includeDisabled) {
+            return getView(View.ALL, includeDisabled);
+        }
+
+        @Override
+        public Set<IRegion> getFullRegions(boolean includeDisabled) {
+            return getView(View.FULL, includeDisabled);
+        }
+
+        @Override
+        public Set<IRegion> getPartialRegions(boolean includeDisabled) {
+            return getView(View.PARTIAL, includeDisabled);
+        }
+
+        /**
+         * Positions are told apart by which partial regions contain them,
+         * and the last few chains seen are kept by that so repeat lookups don't build anything.
+         */
+        @Override
+        public HandlerChain getChain(Vector3i position) {
+            refresh();
+            IRegion[] partial = getPartial();
+            if (partial.length > 64) return getChainSlow(position.getX(), position.getY(), position.getZ());
+            if (masks == null && partial.length > 0 && ++lookups >= HOT_LOOKUPS) compileMasks(partial);
+            long mask = 0;
+            if (masks != null) {
+                int bit = isColumn()
+                        ? (position.getZ() & 15) << 4 | position.getX() & 15
+                        : (position.getY() & 15) << 8 | (position.getZ() & 15) << 4 | position.getX() & 15;
+                int word = bit >>> 6;
+                long flag = 1L << bit;
+                for (int i = 0; i < masks.length; i++) {
+                    if ((masks[i][word] & flag) != 0) mask |= 1L << i;
+                }
+            } else {
+                World world = getWorld();
+                for (int i = 0; i < partial.length; i++) {
+                    if (partial[i].contains(position, world)) mask |= 1L << i;
+                }
+            }
+            return getChain(mask);
+        }
+
+        @Override
+        public HandlerChain getChain(Vector3d position) {
+            refresh();
+            IRegion[] partial = getPartial();
+            if (partial.length > 64) {
+                return getChainSlow(GenericMath.floor(position.getX()), GenericMath.floor(position.getY()), GenericMath.floor(position.getZ()));
+            }
+            World world = getWorld();
+            long mask = 0;
+            for (int i = 0; i < partial.length; i++) {
+                if (partial[i].contains(position, world)) mask |= 1L << i;
+            }
+            return getChain(mask);
+        }
+
+        private HandlerChain getChain(long mask) {
+            for (int i = 0; i < chainCount; i++) {
+                if (chainMasks[i] == mask) {
+                    HandlerChain chain = chainCache[i];
+                    if (!chain.isValid()) {
+                        chain = buildChain(mask);
+                        chainCache[i] = chain;
+                    }
+                    return chain;
+                }
+            }
+            HandlerChain chain = buildChain(mask);
+            int slot = chainCount < CHUNK_CHAINS ? chainCount++ : (int) (mask & (CHUNK_CHAINS - 1));
+            chainMasks[slot] = mask;
+            chainCache[slot] = chain;
+            return chain;
+        }
+
+        private HandlerChain buildChain(long mask) {
+            if (mask == 0) return RegionCache.this.getChain(getFullRegions(false));
+            ImmutableSet.Builder<IRegion> builder = ImmutableSet.builder();
+            builder.addAll(getFullRegions(false));
+            for (int i = 0; i < partial.length; i++) {
+                if ((mask & 1L << i) != 0) builder.add(partial[i]);
+            }
+            return RegionCache.this.getChain(builder.build());
+        }
+
+        /**
+         * Chunks with too many partial regions for a mask just build the set each time.
+         */
+        private HandlerChain getChainSlow(int x, int y, int z) {
+            World world = getWorld();
+            ImmutableSet.Builder<IRegion> builder = ImmutableSet.builder();
+            builder.addAll(getFullRegions(false));
+            for (IRegion region : getPartialRegions(false)) {
+                if (region.contains(x, y, z, world)) builder.add(region);
+            }
+            return RegionCache.this.getChain(builder.build());
+        }
+
+        /**
+         * Tests every block in the chunk against each partial region once and keeps the results as bit masks,
+         * so later lookups by block are a bit test per region instead of a containment check.
+         * Only block positions use the masks. Fractional positions can land differently near curved edges.
+         * Columns only hold height independent regions, so they only need one layer.
+         */
+        private void compileMasks(IRegion[] partial) {
+            World world = getWorld();
+            Vector3i chunk = getChunk();
+            int height = isColumn() ? 1 : 16;
+            int baseX = chunk.getX() << 4, baseY = isColumn() ? 0 : chunk.getY() << 4, baseZ = chunk.getZ() << 4;
+            long[][] masks = new long[partial.length][height * 4];
+            for (int i = 0; i < partial.length; i++) {
+                IRegion region = partial[i];
+                long[] regionMask = masks[i];
+                for (int y = 0; y < height; y++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int x = 0; x < 16; x++) {
+                            if (region.contains(baseX + x, baseY + y, baseZ + z, world)) {
+                                int bit = y << 8 | z << 4 | x;
+                                regionMask[bit >>> 6] |= 1L << bit;
+                            }
+                        }
+                    }
+                }
+            }
+            this.masks = masks;
+        }
+
+        long estimateMaskSize() {
+            return masks == null ? 0 : masks.length * (16 + masks[0].length * 8L);
+        }
+
+        private IRegion[] getPartial() {
+            if (partial == null) {
+                Set<IRegion> set = getPartialRegions(false);
+                partial = set.toArray(new IRegion[set.size()]);
+            }
+            return partial;
+        }
+
+        private void refresh() {
+            long stamp = update();
+            if (stamp != viewStamp) {
+                Arrays.fill(views, null);
+                partial = null;
+                masks = null;
+                lookups = 0;
+                chainCount = 0;
+                Arrays.fill(chainCache, null);
+                viewStamp = stamp;
+            }
+        }
+
+        private Set<IRegion> getView(View view, boolean includeDisabled) {
+            refresh();
+            int index = view.ordinal() * 2 + (includeDisabled ? 1 : 0);
+            Set<IRegion> set = views[index];
+            if (set == null) {
+                ImmutableSet.Builder<IRegion> builder = ImmutableSet.builder();
+                collect(view, includeDisabled, builder);
+                set = builder.build();
+                views[index] = set;
+            }
+            return set;
+        }
+
+        /**
+         * Applies any pending changes.
+         *
+         * @return a stamp that changes whenever the contents change
+         */
+        abstract long update();
+
+        abstract void collect(View view, boolean includeDisabled, ImmutableSet.Builder<IRegion> builder);
+
+        abstract long estimateSize();
+
+        abstract World getWorld();
+
+        abstract Vector3i getChunk();
+
+        abstract boolean isColumn();
+    }
+
+    private class ColumnData extends CachedData {
+
+        private final RegionSet regions;
+        private boolean referenced = true;
+
+        /**
+         * How many cached sections point at this column. It can't be evicted until they're gone.
+         */
+        private int sections = 0;
+
+        private ColumnData(WorldData worldData, int x, int z) {
+            this.regions = new RegionSet(worldData.world, new Vector3i(x, 0, z));
+            worldData.columnIndex.query(x, 0, z, this.regions::addIfInChunk);
+            regionColumnIndex.query(x, 0, z, this.regions::addIfInChunk);
+        }
+
+        /**
+         * Takes the height independent regions from a prewarmed section in this column.
+         */
+        private ColumnData(WorldData worldData, int x, int z, SnapshotData warm) {
+            this.regions = new RegionSet(worldData.world, new Vector3i(x, 0, z));
+            for (IRegion region : warm.allDisabled) {
+                if (region.isHeightIndependent()) this.regions.add(region, warm.fullDisabled.contains(region));
+            }
+        }
+
+        @Override
+        long update() {
+            regions.update();
+            return regions.version;
+        }
+
+        @Override
+        void collect(View view, boolean includeDisabled, ImmutableSet.Builder<IRegion> builder) {
+            regions.collect(view, includeDisabled, builder);
+        }
+
+        @Override
+        long estimateSize() {
+            return regions.estimateSize() + estimateMaskSize();
+        }
+
+        @Override
+        World getWorld() {
+            return regions.world;
+        }
+
+        @Override
+        Vector3i getChunk() {
+            return regions.chunk;
+        }
+
+        @Override
+        boolean isColumn() {
+            return true;
+        }
+    }
+
+    private class SectionData extends CachedData {
+
+        private final RegionSet regions;
+        private final ColumnData column;
+        private boolean referenced = true;
+
+        private SectionData() {
+            this.regions = null;
+            this.column = null;
+        }
+
+        private SectionData(WorldData worldData, ColumnData column, Vector3i chunk) {
+            this.regions = new RegionSet(worldData.world, chunk);
+            this.column = column;
+            worldData.index.query(chunk.getX(), chunk.getY(), chunk.getZ(), this.regions::addIfInChunk);
+            regionIndex.query(chunk.getX(), chunk.getY(), chunk.getZ(), this.regions::addIfInChunk);
+        }
+
+        private SectionData(WorldData worldData, ColumnData column, Vector3i chunk, SnapshotData warm) {
+            this.regions = new RegionSet(worldData.world, chunk);
+            this.column = column;
+            for (IRegion region : warm.allDisabled) {
+                if (!region.isHeightIndependent()) this.regions.add(region, warm.fullDisabled.contains(region));
+            }
+        }
+
+        @Override
+        long update() {
+            regions.update();
+            column.regions.update();
+            return (long) regions.version << 32 | column.regions.version & 0xFFFFFFFFL;
+        }
+
+        @Override
+        void collect(View view, boolean includeDisabled, ImmutableSet.Builder<IRegion> builder) {
+            column.regions.collect(view, includeDisabled, builder);
+            regions.collect(view, includeDisabled, builder);
+        }
+
+        @Override
+        long estimateSize() {
+            return regions.estimateSize() + estimateMaskSize();
+        }
+
+        @Override
+        World getWorld() {
+            return regions.world;
+        }
+
+        @Override
+        Vector3i getChunk() {
+            return regions.chunk;
+        }
+
+        @Override
+        boolean isColumn() {
+            return false;
+        }
+    }
+
+    /**
+     * Tracks which regions touch a chunk section or column, and applies dirty marks lazily.
+     */
+    private static class RegionSet {
 
         private final World world;
         private final Vector3i chunk;
 
-        private final Set<IRegion> contains;
-        private final Set<IRegion> disabled;
-        private final Map<IRegion, DirtyType> dirty;
+        private final Set<IRegion> contains = new HashSet<>();
+        private final Set<IRegion> disabled = new HashSet<>();
+        private final Set<IRegion> full = new HashSet<>();
+        private final Map<IRegion, DirtyType> dirty = new HashMap<>();
         private boolean isDirty = false;
+        private int version = 0;
 
-
-        public ChunkData(World world, Vector3i chunk) {
+        private RegionSet(World world, Vector3i chunk) {
             this.world = world;
             this.chunk = chunk;
-            this.dirty = new HashMap<>();
-            this.contains = new HashSet<>();
-            worldRegions.get(world).stream()
-                    .filter(IFGObject::isEnabled)
-                    .filter(r -> r.isInChunk(chunk))
-                    .forEach(contains::add);
-            regions.stream()
-                    .filter(IFGObject::isEnabled)
-                    .filter(r -> r.isInChunk(chunk, world))
-                    .forEach(contains::add);
-            this.disabled = new HashSet<>();
-            worldRegions.get(world).stream()
-                    .filter(r -> !r.isEnabled())
-                    .filter(r -> r.isInChunk(chunk))
-                    .forEach(disabled::add);
-            regions.stream()
-                    .filter(IFGObject::isEnabled)
-                    .filter(r -> r.isInChunk(chunk, world))
-                    .forEach(disabled::add);
         }
 
-        public Set<IRegion> getRegions(boolean includeDisabled) {
+        private void addIfInChunk(IRegion region) {
+            if (region.isInChunk(chunk, world)) add(region, region.containsChunk(chunk, world));
+        }
+
+        private void add(IRegion region, boolean isFull) {
+            if (region.isEnabled()) {
+                contains.add(region);
+            } else {
+                disabled.add(region);
+            }
+            if (isFull) full.add(region);
+        }
+
+        private void update() {
             if (this.isDirty) {
                 for (Map.Entry<IRegion, DirtyType> entry : dirty.entrySet()) {
                     IRegion r = entry.getKey();
                     switch (entry.getValue()) {
                         case ADDED:
-                            if (r.isInChunk(chunk, world)) {
-                                if (r.isEnabled()) {
-                                    contains.add(r);
-                                } else {
-                                    disabled.add(r);
-                                }
-                            }
+                            addIfInChunk(r);
                             break;
                         case MODIFIED:
-                            if (r.isInChunk(chunk, world)) {
-                                if (r.isEnabled()) {
-                                    contains.add(r);
-                                    disabled.remove(r);
-                                } else {
-                                    contains.remove(r);
-                                    disabled.add(r);
-                                }
-                            } else {
-                                contains.remove(r);
-                                disabled.remove(r);
-                            }
+                            contains.remove(r);
+                            disabled.remove(r);
+                            full.remove(r);
+                            addIfInChunk(r);
                             break;
                         case REMOVED:
                             contains.remove(r);
                             disabled.remove(r);
+                            full.remove(r);
                             break;
                     }
                 }
                 this.dirty.clear();
                 this.isDirty = false;
+                this.version++;
             }
-            if (includeDisabled) return ImmutableSet.<IRegion>builder().addAll(contains).addAll(disabled).build();
-            else return ImmutableSet.copyOf(contains);
         }
 
-        public void markDirty(IRegion region, DirtyType type) {
+        private void markDirty(IRegion region, DirtyType type) {
             dirty.put(region, type);
             isDirty = true;
         }
 
+        private boolean isEmpty() {
+            return contains.isEmpty() && disabled.isEmpty();
+        }
+
+        private void collect(View view, boolean includeDisabled, ImmutableSet.Builder<IRegion> builder) {
+            collect(view, contains, builder);
+            if (includeDisabled) collect(view, disabled, builder);
+        }
+
+        private void collect(View view, Set<IRegion> set, ImmutableSet.Builder<IRegion> builder) {
+            for (IRegion region : set) {
+                if (view == View.ALL || (view == View.FULL) == full.contains(region)) builder.add(region);
+            }
+        }
+
+        private long estimateSize() {
+            return CHUNK_DATA_BYTES + (contains.size() + disabled.size() + full.size() + dirty.size()) * REGION_ENTRY_BYTES;
+        }
+    }
+
+    /**
+     * The regions as they stood when a snapshot was published, for lookups from other threads.
+     * Nothing in here is modified after it's published.
+     */
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Layer.EMPTY, ImmutableMap.of());
+
+        private final Layer superLayer;
+        private final Map<World, Layer> worldLayers;
+
+        private Snapshot(Layer superLayer, Map<World, Layer> worldLayers) {
+            this.superLayer = superLayer;
+            this.worldLayers = worldLayers;
+        }
+    }
+
+    /**
+     * A region as it stood when it was published.
+     * Readers on other threads use the enabled state and chunk bounds captured here instead of asking the region,
+     * so toggling a region, or moving it into chunks it didn't cover before, is only seen once it's published.
+     * <p>
+     * Shapes are not captured: the containment checks in {@link SnapshotData} ask the region itself.
+     * A shape edited on the server thread can therefore show up off it before the edit is published,
+     * within the bounds captured here. Regions keep their shape in volatile fields so such a read sees a value
+     * that was actually set, and publishing drops every entry inside both the old and the new bounds,
+     * so lookups agree with the region again from the next publish on.
+     */
+    private static final class RegionState {
+
+        private final IRegion region;
+        private final World world;
+        private final boolean enabled;
+        private final int minX, minY, minZ, maxX, maxY, maxZ;
+
+        private RegionState(IRegion region, @Nullable World world) {
+            this.region = region;
+            this.world = world;
+            this.enabled = region.isEnabled();
+            BoundingBox3 bounds = region.getBlockBounds();
+            this.minX = RegionIndex.toMinChunk(bounds.a.getX());
+            this.minY = RegionIndex.toMinChunk(bounds.a.getY());
+            this.minZ = RegionIndex.toMinChunk(bounds.a.getZ());
+            this.maxX = RegionIndex.toMaxChunk(bounds.b.getX());
+            this.maxY = RegionIndex.toMaxChunk(bounds.b.getY());
+            this.maxZ = RegionIndex.toMaxChunk(bounds.b.getZ());
+        }
+
+        private boolean overlaps(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+    }
+
+    /**
+     * The published regions of one world, or the ones that apply to every world, bucketed by cells of chunk columns.
+     * A layer is never modified once built. Editing one copies only the shards of cells the edit touches,
+     * so publishing a change doesn't cost anything for the regions that didn't change.
+     * Regions that span too many cells, including unbounded ones, are kept in a flat array every lookup scans.
+     */
+    private static final class Layer {
+
+        private static final int CELL_SHIFT = 4;
+        private static final int SHARD_BITS = 6;
+        private static final int MAX_CELLS = 64;
+        private static final RegionState[] NONE = new RegionState[0];
+
+        @SuppressWarnings("unchecked")
+        private static final Layer EMPTY = new Layer(new Map[1 << SHARD_BITS], NONE);
+
+        private final Map<Long, RegionState[]>[] shards;
+        private final RegionState[] large;
+
+        private Layer(Map<Long, RegionState[]>[] shards, RegionState[] large) {
+            this.shards = shards;
+            this.large = large;
+        }
+
+        private void query(int x, int y, int z, Consumer<RegionState> consumer) {
+            for (RegionState state : large) {
+                if (state.overlaps(x, y, z)) consumer.accept(state);
+            }
+            long cell = ChunkTable.key(x >> CELL_SHIFT, 0, z >> CELL_SHIFT);
+            Map<Long, RegionState[]> shard = shards[shard(cell)];
+            if (shard == null) return;
+            RegionState[] states = shard.get(cell);
+            if (states == null) return;
+            for (RegionState state : states) {
+                if (state.overlaps(x, y, z)) consumer.accept(state);
+            }
+        }
+
+        private Editor edit() {
+            return new Editor(this);
+        }
+
+        private static int shard(long cell) {
+            return (int) (cell * 0x9E3779B97F4A7C15L >>> (64 - SHARD_BITS));
+        }
+
+        private static boolean isLarge(RegionState state) {
+            long width = (long) (state.maxX >> CELL_SHIFT) - (state.minX >> CELL_SHIFT) + 1;
+            long depth = (long) (state.maxZ >> CELL_SHIFT) - (state.minZ >> CELL_SHIFT) + 1;
+            return width * depth > MAX_CELLS;
+        }
+
+        private static void forEachCell(RegionState state, LongConsumer action) {
+            for (int x = state.minX >> CELL_SHIFT; x <= state.maxX >> CELL_SHIFT; x++) {
+                for (int z = state.minZ >> CELL_SHIFT; z <= state.maxZ >> CELL_SHIFT; z++) {
+                    action.accept(ChunkTable.key(x, 0, z));
+                }
+            }
+        }
+
+        private static final class Editor {
+
+            private final Map<Long, RegionState[]>[] shards;
+            private final boolean[] copied;
+            private final RegionState[] baseLarge;
+            private List<RegionState> large;
+
+            private Editor(Layer base) {
+                this.shards = base.shards.clone();
+                this.copied = new boolean[this.shards.length];
+                this.baseLarge = base.large;
+            }
+
+            private void add(RegionState state) {
+                if (isLarge(state)) {
+                    large().add(state);
+                    return;
+                }
+                forEachCell(state, cell -> {
+                    Map<Long, RegionState[]> shard = shardFor(cell);
+                    RegionState[] states = shard.getOrDefault(cell, NONE);
+                    RegionState[] grown = Arrays.copyOf(states, states.length + 1);
+                    grown[states.length] = state;
+                    shard.put(cell, grown);
+                });
+            }
+
+            private void remove(RegionState state) {
+                if (isLarge(state)) {
+                    large().remove(state);
+                    return;
+                }
+                forEachCell(state, cell -> {
+                    Map<Long, RegionState[]> shard = shardFor(cell);
+                    RegionState[] states = shard.get(cell);
+                    if (states == null) return;
+                    RegionState[] kept = new RegionState[states.length];
+                    int count = 0;
+                    for (RegionState existing : states) {
+                        if (existing != state) kept[count++] = existing;
+                    }
+                    if (count == 0) shard.remove(cell);
+                    else shard.put(cell, Arrays.copyOf(kept, count));
+                });
+            }
+
+            private Map<Long, RegionState[]> shardFor(long cell) {
+                int index = shard(cell);
+                if (!copied[index]) {
+                    shards[index] = shards[index] == null ? new HashMap<>() : new HashMap<>(shards[index]);
+                    copied[index] = true;
+                }
+                return shards[index];
+            }
+
+            private List<RegionState> large() {
+                if (large == null) large = new ArrayList<>(Arrays.asList(baseLarge));
+                return large;
+            }
+
+            private Layer build() {
+                return new Layer(shards, large == null ? baseLarge : large.toArray(new RegionState[large.size()]));
+            }
+        }
+    }
+
+    /**
+     * The snapshot entries built for one world. Entries carry over from one snapshot to the next,
+     * since publishing drops the ones inside the bounds of every region that changed.
+     */
+    private static final class SnapshotStore {
+
+        private final Map<Long, SnapshotData> chunks = new ConcurrentHashMap<>();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+        private final int maxEntries;
+
+        private SnapshotStore(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        private SnapshotData peek(long key) {
+            return chunks.get(key);
+        }
+
+        private SnapshotData get(long key) {
+            SnapshotData data = chunks.get(key);
+            if (data != null && !data.referenced) data.referenced = true;
+            return data;
+        }
+
+        private void put(long key, SnapshotData data) {
+            chunks.put(key, data);
+            if (maxEntries > 0 && chunks.size() > maxEntries) evict();
+        }
+
+        private void remove(long key, SnapshotData data) {
+            chunks.remove(key, data);
+        }
+
+        /**
+         * Evicts entries with a second chance sweep until the store is down to three quarters of its limit,
+         * so one sweep pays for a good number of misses. Only one thread sweeps at a time, the others just carry on.
+         */
+        private void evict() {
+            if (!evicting.compareAndSet(false, true)) return;
+            try {
+                int target = maxEntries - maxEntries / 4;
+                while (chunks.size() > target) {
+                    Iterator<SnapshotData> iterator = chunks.values().iterator();
+                    while (iterator.hasNext() && chunks.size() > target) {
+                        SnapshotData data = iterator.next();
+                        if (data.referenced) data.referenced = false;
+                        else iterator.remove();
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+
+        /**
+         * Drops every entry inside a region's captured chunk bounds.
+         * Small bounds are looked up directly, anything bigger than the store is swept instead.
+         */
+        private void invalidate(RegionState state) {
+            if (chunks.isEmpty()) return;
+            int size = chunks.size();
+            long volume = (long) state.maxX - state.minX + 1;
+            if (volume <= size) volume *= (long) state.maxZ - state.minZ + 1;
+            if (volume <= size) volume *= (long) Math.min(state.maxY, 2047) - Math.max(state.minY, -2048) + 1;
+            if (volume <= size) {
+                for (int x = state.minX; x <= state.maxX; x++) {
+                    for (int z = state.minZ; z <= state.maxZ; z++) {
+                        for (int y = Math.max(state.minY, -2048); y <= Math.min(state.maxY, 2047); y++) {
+                            chunks.remove(ChunkTable.key(x, y, z));
+                        }
+                    }
+                }
+            } else {
+                chunks.keySet().removeIf(key -> state.overlaps(ChunkTable.keyX(key), ChunkTable.keyY(key), ChunkTable.keyZ(key)));
+            }
+        }
+    }
+
+    /**
+     * An immutable copy of the regions in a chunk section, built from a snapshot.
+     * Enabled states come from the snapshot, so they match the rest of it even if a region is toggled meanwhile.
+     * Whether a region covers the chunk or a position is asked of the region, see {@link RegionState}.
+     */
+    private final class SnapshotData implements ChunkData {
+
+        private final World world;
+        private final Set<IRegion> all, full, partial;
+        private final Set<IRegion> allDisabled, fullDisabled, partialDisabled;
+        private volatile boolean referenced = true;
+
+        private SnapshotData(Snapshot snapshot, World world, int x, int y, int z) {
+            this.world = world;
+            Vector3i chunk = new Vector3i(x, y, z);
+            ImmutableSet.Builder<IRegion> full = ImmutableSet.builder(), partial = ImmutableSet.builder();
+            ImmutableSet.Builder<IRegion> fullDisabled = ImmutableSet.builder(), partialDisabled = ImmutableSet.builder();
+            Consumer<RegionState> consumer = state -> {
+                IRegion region = state.region;
+                if (!region.isInChunk(chunk, world)) return;
+                boolean contains = region.containsChunk(chunk, world);
+                if (state.enabled) (contains ? full : partial).add(region);
+                else (contains ? fullDisabled : partialDisabled).add(region);
+            };
+            snapshot.superLayer.query(x, y, z, consumer);
+            Layer worldLayer = snapshot.worldLayers.get(world);
+            if (worldLayer != null) worldLayer.query(x, y, z, consumer);
+            this.full = full.build();
+            this.partial = partial.build();
+            this.all = ImmutableSet.<IRegion>builder().addAll(this.full).addAll(this.partial).build();
+            this.fullDisabled = fullDisabled.addAll(this.full).build();
+            this.partialDisabled = partialDisabled.addAll(this.partial).build();
+            this.allDisabled = ImmutableSet.<IRegion>builder().addAll(this.fullDisabled).addAll(this.partialDisabled).build();
+        }
+
+        @Override
+        public Set<IRegion> getRegions(boolean includeDisabled) {
+            return includeDisabled ? allDisabled : all;
+        }
+
+        @Override
+        public Set<IRegion> getFullRegions(boolean includeDisabled) {
+            return includeDisabled ? fullDisabled : full;
+        }
+
+        @Override
+        public Set<IRegion> getPartialRegions(boolean includeDisabled) {
+            return includeDisabled ? partialDisabled : partial;
+        }
+
+        @Override
+        public HandlerChain getChain(Vector3i position) {
+            if (partial.isEmpty()) return RegionCache.this.getChain(full);
+            ImmutableSet.Builder<IRegion> builder = ImmutableSet.builder();
+            builder.addAll(full);
+            for (IRegion region : partial) {
+                if (region.contains(position, world)) builder.add(region);
+            }
+            return RegionCache.this.getChain(builder.build());
+        }
+
+        @Override
+        public HandlerChain getChain(Vector3d position) {
+            if (partial.isEmpty()) return RegionCache.this.getChain(full);
+            ImmutableSet.Builder<IRegion> builder = ImmutableSet.builder();
+            builder.addAll(full);
+            for (IRegion region : partial) {
+                if (region.contains(position, world)) builder.add(region);
+            }
+            return RegionCache.this.getChain(builder.build());
+        }
+    }
+
+    private enum View {
+        ALL, FULL, PARTIAL
     }
 
     public enum DirtyType {
@@ -0,0 +1,138 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.util;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Builds region cache entries in the background around online players and world spawns,
+ * so the first event in a freshly loaded area doesn't pay for the region lookup on the server thread.
+ * Players are polled every few ticks and only warmed again once they cross into another chunk.
+ * While regions are changing, targets are held back and merged, so a burst of edits doesn't pile up duplicates.
+ */
+public class RegionCacheWarmer {
+
+    private static final int POLL_TICKS = 10;
+
+    private final Object plugin;
+    private final RegionCache cache;
+    private final int radius;
+
+    private final Map<UUID, Target> lastTargets = new HashMap<>();
+    private final Set<Target> pending = new LinkedHashSet<>();
+
+    public RegionCacheWarmer(Object plugin, RegionCache cache, int radius) {
+        this.plugin = plugin;
+        this.cache = cache;
+        this.radius = radius;
+    }
+
+    public void start() {
+        Sponge.getScheduler().createTaskBuilder()
+                .name("FoxGuard region cache warmer")
+                .intervalTicks(POLL_TICKS)
+                .execute(this::poll)
+                .submit(plugin);
+    }
+
+    public void warmSpawn(World world) {
+        pending.add(new Target(world, world.getSpawnLocation().getBlockPosition()));
+    }
+
+    /**
+     * Drops everything queued or remembered for a world, so nothing keeps it around after it unloads.
+     */
+    public void unloadWorld(World world) {
+        pending.removeIf(target -> target.world == world);
+        lastTargets.values().removeIf(target -> target.world == world);
+    }
+
+    private void poll() {
+        Map<UUID, Target> targets = new HashMap<>();
+        for (Player player : Sponge.getServer().getOnlinePlayers()) {
+            Target target = new Target(player.getWorld(), player.getLocation().getBlockPosition());
+            targets.put(player.getUniqueId(), target);
+            if (!target.equals(lastTargets.get(player.getUniqueId()))) pending.add(target);
+        }
+        lastTargets.clear();
+        lastTargets.putAll(targets);
+
+        // Anything built against a snapshot that's about to be replaced would just be thrown away.
+        if (pending.isEmpty() || !cache.isSnapshotCurrent()) return;
+        List<Target> batch = new ArrayList<>(pending);
+        pending.clear();
+        Sponge.getScheduler().createTaskBuilder()
+                .async()
+                .execute(() -> {
+                    for (Target target : batch) {
+                        cache.prewarm(target.world,
+                                target.x - radius, target.y - 1, target.z - radius,
+                                target.x + radius, target.y + 1, target.z + radius);
+                    }
+                })
+                .submit(plugin);
+    }
+
+    private static final class Target {
+        private final World world;
+        private final int x, y, z;
+
+        private Target(World world, Vector3i position) {
+            this.world = world;
+            this.x = position.getX() >> 4;
+            this.y = position.getY() >> 4;
+            this.z = position.getZ() >> 4;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Target target = (Target) o;
+            return x == target.x && y == target.y && z == target.z && world.equals(target.world);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = world.hashCode();
+            result = 31 * result + x;
+            result = 31 * result + y;
+            result = 31 * result + z;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.util;
+
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxguard.plugin.region.IRegion;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A dynamic bounding volume hierarchy over the block bounds of a set of regions.
+ * Bounds are stored in chunk coordinates, so a query for a single chunk only has to walk
+ * the branches whose boxes overlap that chunk instead of testing every region.
+ * Regions that are unbounded on every axis are kept in a flat set and always returned.
+ */
+public class RegionIndex {
+
+    /**
+     * Extents are clamped to this many chunks when computing insertion costs,
+     * so that regions which are infinite along an axis don't swamp the heuristic.
+     */
+    private static final int COST_CLAMP = 1 << 12;
+
+    private final Map<IRegion, Node> leaves = new HashMap<>();
+    private final Set<IRegion> unbounded = new HashSet<>();
+    private Node root;
+
+    public void insert(IRegion region) {
+        remove(region);
+        BoundingBox3 bounds = region.getBlockBounds();
+        if (isUnbounded(bounds)) {
+            unbounded.add(region);
+        } else {
+            Node leaf = new Node();
+            leaf.region = region;
+            leaf.minX = toMinChunk(bounds.a.getX());
+            leaf.minY = toMinChunk(bounds.a.getY());
+            leaf.minZ = toMinChunk(bounds.a.getZ());
+            leaf.maxX = toMaxChunk(bounds.b.getX());
+            leaf.maxY = toMaxChunk(bounds.b.getY());
+            leaf.maxZ = toMaxChunk(bounds.b.getZ());
+            leaves.put(region, leaf);
+            insertLeaf(leaf);
+        }
+    }
+
+    public boolean remove(IRegion region) {
+        if (unbounded.remove(region)) return true;
+        Node leaf = leaves.remove(region);
+        if (leaf == null) return false;
+        removeLeaf(leaf);
+        return true;
+    }
+
+    public boolean contains(IRegion region) {
+        return unbounded.contains(region) || leaves.containsKey(region);
+    }
+
+    /**
+     * Gets the chunk bounds a region was last indexed with, as {minX, minY, minZ, maxX, maxY, maxZ}.
+     * Unbounded regions span the whole integer range.
+     *
+     * @return the indexed chunk bounds, or null if the region isn't indexed
+     */
+    public int[] getChunkBounds(IRegion region) {
+        if (unbounded.contains(region)) {
+            return new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        }
+        Node leaf = leaves.get(region);
+        if (leaf == null) return null;
+        return new int[]{leaf.minX, leaf.minY, leaf.minZ, leaf.maxX, leaf.maxY, leaf.maxZ};
+    }
+
+    public int size() {
+        return unbounded.size() + leaves.size();
+    }
+
+    public void clear() {
+        unbounded.clear();
+        leaves.clear();
+        root = null;
+    }
+
+    public void query(int chunkX, int chunkY, int chunkZ, Consumer<IRegion> consumer) {
+        query(chunkX, chunkY, chunkZ, chunkX, chunkY, chunkZ, consumer);
+    }
+
+    /**
+     * Passes every indexed region whose bounds overlap the given box of chunks to the consumer.
+     * This is only a broad phase, so callers still need to test the regions themselves.
+     */
+    public void query(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Consumer<IRegion> consumer) {
+        unbounded.forEach(consumer);
+        if (root == null) return;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.minX > maxX || node.maxX < minX
+                    || node.minY > maxY || node.maxY < minY
+                    || node.minZ > maxZ || node.maxZ < minZ) continue;
+            if (node.isLeaf()) {
+                consumer.accept(node.region);
+            } else {
+                stack.push(node.left);
+                stack.push(node.right);
+            }
+        }
+    }
+
+    private void insertLeaf(Node leaf) {
+        if (root == null) {
+            root = leaf;
+            leaf.parent = null;
+            return;
+        }
+
+        // Walk down the tree, picking whichever branch grows the least by taking this leaf.
+        Node sibling = root;
+        while (!sibling.isLeaf()) {
+            double area = area(sibling);
+            double combined = unionArea(sibling, leaf);
+            double cost = 2 * combined;
+            double inheritance = 2 * (combined - area);
+            double leftCost = descendCost(sibling.left, leaf) + inheritance;
+            double rightCost = descendCost(sibling.right, leaf) + inheritance;
+            if (cost < leftCost && cost < rightCost) break;
+            sibling = leftCost < rightCost ? sibling.left : sibling.right;
+        }
+
+        Node oldParent = sibling.parent;
+        Node newParent = new Node();
+        newParent.parent = oldParent;
+        newParent.left = sibling;
+        newParent.right = leaf;
+        sibling.parent = newParent;
+        leaf.parent = newParent;
+        newParent.refit();
+        if (oldParent == null) {
+            root = newParent;
+        } else if (oldParent.left == sibling) {
+            oldParent.left = newParent;
+        } else {
+            oldParent.right = newParent;
+        }
+        fixUpwards(newParent.parent);
+    }
+
+    private void removeLeaf(Node leaf) {
+        if (leaf == root) {
+            root = null;
+            return;
+        }
+        Node parent = leaf.parent;
+        Node grandParent = parent.parent;
+        Node sibling = parent.left == leaf ? parent.right : parent.left;
+        sibling.parent = grandParent;
+        if (grandParent == null) {
+            root = sibling;
+        } else {
+            if (grandParent.left == parent) grandParent.left = sibling;
+            else grandParent.right = sibling;
+            fixUpwards(grandParent);
+        }
+        leaf.parent = null;
+    }
+
+    private void fixUpwards(Node node) {
+        while (node != null) {
+            node = balance(node);
+            node.refit();
+            node = node.parent;
+        }
+    }
+
+    private Node balance(Node node) {
+        if (node.isLeaf() || node.height < 2) return node;
+        int difference = node.right.height - node.left.height;
+        if (difference > 1) return rotate(node, node.right, node.left);
+        if (difference < -1) return rotate(node, node.left, node.right);
+        return node;
+    }
+
+    /**
+     * Lifts the taller child of a node into its place.
+     * The taller grandchild stays with the lifted node and the other one moves down under the old node.
+     */
+    private Node rotate(Node node, Node tall, Node other) {
+        Node keep, give;
+        if (tall.left.height > tall.right.height) {
+            keep = tall.left;
+            give = tall.right;
+        } else {
+            keep = tall.right;
+            give = tall.left;
+        }
+
+        tall.parent = node.parent;
+        if (tall.parent == null) {
+            root = tall;
+        } else if (tall.parent.left == node) {
+            tall.parent.left = tall;
+        } else {
+            tall.parent.right = tall;
+        }
+
+        tall.left = node;
+        tall.right = keep;
+        node.parent = tall;
+        keep.parent = tall;
+
+        node.left = other;
+        node.right = give;
+        other.parent = node;
+        give.parent = node;
+
+        node.refit();
+        tall.refit();
+        return tall;
+    }
+
+    private static double descendCost(Node node, Node leaf) {
+        double combined = unionArea(node, leaf);
+        return node.isLeaf() ? combined : combined - area(node);
+    }
+
+    private static double area(Node node) {
+        return area(node.minX, node.minY, node.minZ, node.maxX, node.maxY, node.maxZ);
+    }
+
+    private static double unionArea(Node a, Node b) {
+        return area(Math.min(a.minX, b.minX), Math.min(a.minY, b.minY), Math.min(a.minZ, b.minZ),
+                Math.max(a.maxX, b.maxX), Math.max(a.maxY, b.maxY), Math.max(a.maxZ, b.maxZ));
+    }
+
+    private static double area(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        double x = extent(minX, maxX), y = extent(minY, maxY), z = extent(minZ, maxZ);
+        return x * y + y * z + z * x;
+    }
+
+    private static double extent(int min, int max) {
+        return Math.min((long) max - min + 1, COST_CLAMP);
+    }
+
+    private static boolean isUnbounded(BoundingBox3 bounds) {
+        return bounds.a.getX() == Integer.MIN_VALUE && bounds.a.getY() == Integer.MIN_VALUE && bounds.a.getZ() == Integer.MIN_VALUE
+                && bounds.b.getX() == Integer.MAX_VALUE && bounds.b.getY() == Integer.MAX_VALUE && bounds.b.getZ() == Integer.MAX_VALUE;
+    }
+
+    /**
+     * The edge test in {@link IRegion#isInChunk} is inclusive on both ends of a chunk,
+     * so a region that starts exactly on a chunk border also touches the chunk below it.
+     */
+    static int toMinChunk(int block) {
+        return block == Integer.MIN_VALUE ? Integer.MIN_VALUE : (block - 1) >> 4;
+    }
+
+    static int toMaxChunk(int block) {
+        return block >> 4;
+    }
+
+    private static final class Node {
+        int minX, minY, minZ, maxX, maxY, maxZ;
+        int height;
+        Node parent, left, right;
+        IRegion region;
+
+        boolean isLeaf() {
+            return left == null;
+        }
+
+        void refit() {
+            minX = Math.min(left.minX, right.minX);
+            minY = Math.min(left.minY, right.minY);
+            minZ = Math.min(left.minZ, right.minZ);
+            maxX = Math.max(left.maxX, right.maxX);
+            maxY = Math.max(left.maxY, right.maxY);
+            maxZ = Math.max(left.maxZ, right.maxZ);
+            height = 1 + Math.max(left.height, right.height);
+        }
+    }
+}
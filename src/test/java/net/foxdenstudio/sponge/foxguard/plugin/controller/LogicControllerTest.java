@@ -0,0 +1,392 @@
+/*
+ * This file is part of FoxGuard, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxguard.plugin.controller;
+
+import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.Flag;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagBitSet;
+import net.foxdenstudio.sponge.foxguard.plugin.flag.FlagRegistry;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.HandlerBase;
+import net.foxdenstudio.sponge.foxguard.plugin.handler.IHandler;
+import net.foxdenstudio.sponge.foxguard.plugin.listener.util.EventResult;
+import net.foxdenstudio.sponge.foxguard.plugin.util.ExtraContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.spongepowered.api.util.Tristate.*;
+
+/**
+ * Checks compiled logic controllers against a plain interpreter of the same handler graph.
+ * The interpreter follows the operators as they were written before controllers were compiled,
+ * calling every handler through {@link IHandler#handleState(User, FlagBitSet, ExtraContext)}.
+ */
+public class LogicControllerTest {
+
+    private static final ExtraContext EXTRA = ExtraContext.of();
+    private static final Tristate[] STATES = {TRUE, FALSE, UNDEFINED};
+    private static final Map<IHandler, Spec> SPECS = new IdentityHashMap<>();
+
+    private Random random;
+    private List<FlagBitSet> flagSets;
+    private List<User> users;
+
+    @Before
+    public void setUp() {
+        random = new Random(7);
+        List<Flag> flags = FlagRegistry.getInstance().getFlagList();
+        flagSets = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            Set<Flag> set = new HashSet<>();
+            int size = 1 + random.nextInt(4);
+            while (set.size() < size) set.add(flags.get(random.nextInt(flags.size())));
+            flagSets.add(FlagBitSet.of(set));
+        }
+        users = new ArrayList<>();
+        users.add(null);
+        for (int i = 0; i < 3; i++) users.add(user());
+    }
+
+    @Test
+    public void compiledMatchesInterpreter() {
+        for (int graph = 0; graph < 300; graph++) {
+            Graph g = new Graph();
+            for (int event = 0; event < 60; event++) {
+                User user = users.get(random.nextInt(users.size()));
+                FlagBitSet flags = flagSets.get(random.nextInt(flagSets.size()));
+                for (LogicController controller : g.controllers) {
+                    g.resetCounts();
+                    Tristate expected = interpret(controller, user, flags);
+                    Map<Leaf, Integer> expectedCalls = g.userCalls();
+                    g.resetCounts();
+                    Tristate actual = controller.handleState(user, flags, EXTRA);
+                    assertEquals(g.describe(controller), expected, actual);
+                    // anything that depends on the user must run exactly as often as the interpreter runs it,
+                    // which covers short circuiting, IGNORE and memoizing only user independent subtrees
+                    assertEquals(g.describe(controller), expectedCalls, g.userCalls());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void recompilesWhenDependencyChanges() {
+        for (int graph = 0; graph < 200; graph++) {
+            Graph g = new Graph();
+            for (LogicController controller : g.controllers) {
+                for (FlagBitSet flags : flagSets) controller.handleState(null, flags, EXTRA);
+            }
+            Leaf leaf = g.leaves.get(random.nextInt(g.leaves.size()));
+            leaf.shuffle(random);
+            for (LogicController dependent : g.dependents(leaf)) dependent.onDependencyUpdate();
+            for (LogicController controller : g.controllers) {
+                for (User user : users) {
+                    for (FlagBitSet flags : flagSets) {
+                        assertEquals(g.describe(controller), interpret(controller, user, flags), controller.handleState(user, flags, EXTRA));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unrelatedUpdateKeepsMemo() {
+        Leaf leaf = new Leaf("leaf", false);
+        LogicController memoized = controller("memoized", LogicController.Operator.AND, UNDEFINED, false, leaf);
+        LogicController other = controller("other", LogicController.Operator.OR, UNDEFINED, false, new Leaf("other-leaf", false));
+        FlagBitSet flags = flagSets.get(0);
+        memoized.handleState(users.get(1), flags, EXTRA);
+        other.onDependencyUpdate();
+        leaf.calls = 0;
+        memoized.handleState(users.get(2), flags, EXTRA);
+        assertEquals(0, leaf.calls);
+        memoized.onDependencyUpdate();
+        memoized.handleState(users.get(2), flags, EXTRA);
+        assertEquals(1, leaf.calls);
+    }
+
+    private static Tristate interpret(IHandler handler, @Nullable User user, FlagBitSet flags) {
+        if (!(handler instanceof LogicController)) return handler.handleState(user, flags, EXTRA);
+        Spec spec = SPECS.get(handler);
+        List<IHandler> children = ((LogicController) handler).getHandlers();
+        Tristate mode = spec.mode;
+        Tristate state = UNDEFINED;
+        switch (spec.operator) {
+            case AND:
+            case NAND:
+                for (IHandler child : children) {
+                    Tristate ts = interpret(child, user, flags);
+                    if (ts == UNDEFINED) ts = mode;
+                    state = state.and(ts);
+                    if (spec.shortCircuit && state == FALSE) break;
+                }
+                return spec.operator == LogicController.Operator.AND ? state : invert(state);
+            case OR:
+            case NOR:
+                for (IHandler child : children) {
+                    Tristate ts = interpret(child, user, flags);
+                    if (ts == UNDEFINED) ts = mode;
+                    state = state.or(ts);
+                    if (spec.shortCircuit && state == TRUE) break;
+                }
+                return spec.operator == LogicController.Operator.OR ? state : invert(state);
+            case XOR:
+            case XNOR:
+                for (IHandler child : children) {
+                    Tristate ts = interpret(child, user, flags);
+                    if (ts == UNDEFINED) ts = mode;
+                    state = xor(state, ts);
+                }
+                return spec.operator == LogicController.Operator.XOR ? state : invert(state);
+            case NOT:
+                if (children.isEmpty()) return UNDEFINED;
+                state = interpret(children.get(0), user, flags);
+                return invert(state == UNDEFINED ? mode : state);
+            case IGNORE:
+                for (IHandler child : children) {
+                    interpret(child, user, flags);
+                }
+                return mode;
+        }
+        throw new AssertionError(spec.operator);
+    }
+
+    private static Tristate invert(Tristate state) {
+        return state == TRUE ? FALSE : state == FALSE ? TRUE : UNDEFINED;
+    }
+
+    private static Tristate xor(Tristate a, Tristate b) {
+        if (a == UNDEFINED) return b;
+        if (b == UNDEFINED) return a;
+        return a == b ? FALSE : TRUE;
+    }
+
+    private static LogicController controller(String name, LogicController.Operator operator, Tristate mode, boolean shortCircuit, IHandler... children) {
+        LogicController controller = new LogicController(name, true, 0, operator, mode, shortCircuit);
+        Collections.addAll(controller.handlers, children);
+        SPECS.put(controller, new Spec(operator, mode, shortCircuit));
+        return controller;
+    }
+
+    private static User user() {
+        return (User) Proxy.newProxyInstance(User.class.getClassLoader(), new Class<?>[]{User.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "user@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * A random acyclic graph of logic controllers over flag-only and user dependent leaves.
+     * Controllers may share children, and later controllers may link to earlier ones.
+     */
+    private final class Graph {
+
+        private final List<Leaf> leaves = new ArrayList<>();
+        private final List<LogicController> controllers = new ArrayList<>();
+
+        private Graph() {
+            int leafCount = 1 + random.nextInt(5);
+            for (int i = 0; i < leafCount; i++) {
+                Leaf leaf = new Leaf("leaf" + i, random.nextInt(3) == 0);
+                leaf.shuffle(random);
+                leaves.add(leaf);
+            }
+            int controllerCount = 1 + random.nextInt(6);
+            LogicController.Operator[] operators = LogicController.Operator.values();
+            for (int i = 0; i < controllerCount; i++) {
+                LogicController.Operator operator = operators[random.nextInt(operators.length)];
+                int childCount = operator == LogicController.Operator.NOT ? random.nextInt(2) : random.nextInt(5);
+                IHandler[] children = new IHandler[childCount];
+                for (int j = 0; j < childCount; j++) {
+                    int pick = random.nextInt(leaves.size() + controllers.size());
+                    children[j] = pick < leaves.size() ? leaves.get(pick) : controllers.get(pick - leaves.size());
+                }
+                controllers.add(controller(Integer.toString(i), operator, STATES[random.nextInt(3)], random.nextBoolean(), children));
+            }
+        }
+
+        private void resetCounts() {
+            for (Leaf leaf : leaves) leaf.calls = 0;
+        }
+
+        private Map<Leaf, Integer> userCalls() {
+            Map<Leaf, Integer> calls = new IdentityHashMap<>();
+            for (Leaf leaf : leaves) {
+                if (leaf.userDependent) calls.put(leaf, leaf.calls);
+            }
+            return calls;
+        }
+
+        private Set<LogicController> dependents(IHandler handler) {
+            Set<LogicController> dependents = Collections.newSetFromMap(new IdentityHashMap<>());
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (LogicController controller : controllers) {
+                    if (dependents.contains(controller)) continue;
+                    for (IHandler child : controller.getHandlers()) {
+                        if (child == handler || dependents.contains(child)) {
+                            changed = dependents.add(controller);
+                            break;
+                        }
+                    }
+                }
+            }
+            return dependents;
+        }
+
+        private String describe(IHandler handler) {
+            if (!(handler instanceof LogicController)) return handler.getName();
+            Spec spec = SPECS.get(handler);
+            StringBuilder builder = new StringBuilder(spec.operator + "/" + spec.mode + (spec.shortCircuit ? "/short" : "") + "(");
+            List<IHandler> children = ((LogicController) handler).getHandlers();
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) builder.append(", ");
+                builder.append(describe(children.get(i)));
+            }
+            return builder.append(")").toString();
+        }
+    }
+
+    private static final class Spec {
+        private final LogicController.Operator operator;
+        private final Tristate mode;
+        private final boolean shortCircuit;
+
+        private Spec(LogicController.Operator operator, Tristate mode, boolean shortCircuit) {
+            this.operator = operator;
+            this.mode = mode;
+            this.shortCircuit = shortCircuit;
+        }
+    }
+
+    /**
+     * A handler that answers from a table of states, indexed by flag set and, if it's user dependent, by user.
+     */
+    private static final class Leaf extends HandlerBase {
+
+        private final boolean userDependent;
+        private final Map<Object, Tristate> states = new IdentityHashMap<>();
+        private final Map<Object, Tristate> userStates = new IdentityHashMap<>();
+        private long seed;
+        private int calls;
+
+        private Leaf(String name, boolean userDependent) {
+            super(name, 0, true);
+            this.userDependent = userDependent;
+        }
+
+        private void shuffle(Random random) {
+            this.seed = random.nextLong();
+            this.states.clear();
+            this.userStates.clear();
+        }
+
+        @Override
+        public Tristate handleState(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+            calls++;
+            if (userDependent && user != null) {
+                return userStates.computeIfAbsent(user, k -> STATES[new Random(seed ^ System.identityHashCode(k) ^ flags.hashCode()).nextInt(3)]);
+            }
+            return states.computeIfAbsent(flags, k -> STATES[new Random(seed ^ flags.hashCode()).nextInt(3)]);
+        }
+
+        @Override
+        public EventResult handle(@Nullable User user, FlagBitSet flags, ExtraContext extra) {
+            return EventResult.of(handleState(user, flags, extra));
+        }
+
+        @Override
+        public boolean isUserIndependent() {
+            return !userDependent;
+        }
+
+        @Override
+        public String getShortTypeName() {
+            return "Leaf";
+        }
+
+        @Override
+        public String getLongTypeName() {
+            return "Leaf";
+        }
+
+        @Override
+        public String getUniqueTypeString() {
+            return "leaf";
+        }
+
+        @Override
+        public Text details(CommandSource source, String arguments) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> detailsSuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void save(Path directory) {
+        }
+
+        @Override
+        public ProcessResult modify(CommandSource source, String arguments) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> modifySuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}